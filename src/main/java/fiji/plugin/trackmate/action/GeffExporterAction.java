@@ -29,6 +29,7 @@ import java.awt.Frame;
 import java.awt.HeadlessException;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.NavigableSet;
 
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
@@ -37,14 +38,18 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 
 import org.scijava.plugin.Plugin;
 
+import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SelectionModel;
 import fiji.plugin.trackmate.TrackMate;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings;
+import fiji.plugin.trackmate.io.GeffExportFilter;
+import fiji.plugin.trackmate.io.GeffFeatureSelection;
 import fiji.plugin.trackmate.io.GeffIOUtils;
 import fiji.plugin.trackmate.io.IOUtils;
 import fiji.plugin.trackmate.io.TrackMateGeffWriter;
 import fiji.plugin.trackmate.util.TMUtils;
 import ij.IJ;
+import ij.gui.GenericDialog;
 
 public class GeffExporterAction extends AbstractTMAction
 {
@@ -65,8 +70,16 @@ public class GeffExporterAction extends AbstractTMAction
 
 	public static final ImageIcon ICON = null;
 
+	private static final String[] EXPORT_MODES = new String[] {
+			"Whole model",
+			"Visible tracks only",
+			"Current selection only",
+			"Frame range" };
+
 	private static File file = new File( System.getProperty( "user.home" ), "tracks.zarr" );
 
+	private static int exportMode = 0;
+
 	@Override
 	public void execute( final TrackMate trackmate, final SelectionModel selectionModel, final DisplaySettings displaySettings, final Frame parent )
 	{
@@ -89,11 +102,18 @@ public class GeffExporterAction extends AbstractTMAction
 		}
 		file = f3;
 
+		final GeffExportFilter filter = askForExportFilter( trackmate.getModel(), selectionModel, parent );
+		if ( filter == null )
+		{
+			logger.log( "GEFF export canceled.\n" );
+			return;
+		}
+
 		logger.log( "Exporting to GEFF file: " + file.getAbsolutePath() + "\n" );
 		try
 		{
 			final boolean is2D = GeffIOUtils.is2D( trackmate );
-			TrackMateGeffWriter.export( trackmate.getModel(), file.getAbsolutePath(), is2D );
+			TrackMateGeffWriter.export( trackmate.getModel(), file.getAbsolutePath(), is2D, GeffFeatureSelection.all(), filter );
 			logger.log( "Export completed.\n" );
 		}
 		catch ( final Exception e )
@@ -104,6 +124,41 @@ public class GeffExporterAction extends AbstractTMAction
 		}
 	}
 
+	/**
+	 * Asks the user what part of the model to export.
+	 *
+	 * @return the export filter, or <code>null</code> if the user canceled.
+	 */
+	private static GeffExportFilter askForExportFilter( final Model model, final SelectionModel selectionModel, final Frame parent )
+	{
+		final NavigableSet< Integer > frames = model.getSpots().keySet();
+		final int firstFrame = frames.isEmpty() ? 0 : frames.first();
+		final int lastFrame = frames.isEmpty() ? 0 : frames.last();
+
+		final GenericDialog dialog = new GenericDialog( "Export to GEFF", parent );
+		dialog.addChoice( "Export:", EXPORT_MODES, EXPORT_MODES[ exportMode ] );
+		dialog.addNumericField( "First frame (frame range only):", firstFrame, 0 );
+		dialog.addNumericField( "Last frame (frame range only):", lastFrame, 0 );
+		dialog.showDialog();
+		if ( dialog.wasCanceled() )
+			return null;
+
+		exportMode = dialog.getNextChoiceIndex();
+		final int minFrame = ( int ) dialog.getNextNumber();
+		final int maxFrame = ( int ) dialog.getNextNumber();
+		switch ( exportMode )
+		{
+		case 1:
+			return GeffExportFilter.visibleTracks( model );
+		case 2:
+			return GeffExportFilter.selection( selectionModel );
+		case 3:
+			return GeffExportFilter.frames( minFrame, maxFrame );
+		default:
+			return GeffExportFilter.all();
+		}
+	}
+
 	@Plugin( type = TrackMateActionFactory.class )
 	public static class Factory implements TrackMateActionFactory
 	{
@@ -0,0 +1,309 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded cache of decoded GEFF column chunks, shared by all the readers
+ * of the JVM.
+ * <p>
+ * Chunks are keyed by the normalized absolute URI of their array, chunk index
+ * and decoded type, so that readers opened on a store and on one of its
+ * groups share the same entries. They are evicted in least-recently-used
+ * order when the total size of the cached arrays exceeds the limit. Each
+ * entry remembers a stamp of the chunk in the store (modification time and
+ * length of the chunk file for file-system stores, size and write tag of the
+ * array for other stores): an entry whose stamp changed is reloaded, so
+ * chunks rewritten by another process are not served stale. Chunks written
+ * through {@link GeffColumnWriter} are also invalidated explicitly.
+ * <p>
+ * Cached arrays are shared: callers must not modify them.
+ */
+public final class GeffChunkCache
+{
+
+	private static final GeffChunkCache INSTANCE = new GeffChunkCache( Math.min( 256L << 20, Runtime.getRuntime().maxMemory() / 8 ) );
+
+	private final LinkedHashMap< Key, Entry > entries = new LinkedHashMap<>( 16, 0.75f, true );
+
+	private long maxBytes;
+
+	private long bytes;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	private GeffChunkCache( final long maxBytes )
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cache shared by all the GEFF readers.
+	 */
+	public static GeffChunkCache getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Sets the maximal total size of the cached chunks, evicting the least
+	 * recently used ones if needed. A size of 0 disables the cache.
+	 *
+	 * @param maxBytes
+	 *            the maximal size, in bytes.
+	 */
+	public synchronized void setMaxBytes( final long maxBytes )
+	{
+		this.maxBytes = Math.max( 0, maxBytes );
+		evict();
+	}
+
+	public synchronized long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the total size of the cached chunks, in bytes.
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of cached chunks.
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of chunk reads served from the cache.
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * Returns the number of chunk reads that had to decode the chunk,
+	 * including the reloads of chunks that changed on disk.
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * Returns the number of chunks evicted to respect the size limit.
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * Returns the fraction of chunk reads served from the cache, or 0 if there
+	 * was none.
+	 */
+	public synchronized double getHitRatio()
+	{
+		final long total = hits + misses;
+		return total == 0 ? 0. : ( double ) hits / total;
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counters.
+	 */
+	public synchronized void resetStatistics()
+	{
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * Removes all the chunks from the cache.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Removes the chunks of an array, or of all the arrays of a group or a
+	 * store.
+	 *
+	 * @param uri
+	 *            the normalized absolute URI of the array, group or store, as
+	 *            returned by {@link GeffColumn#cacheKey}.
+	 */
+	public synchronized void invalidate( final String uri )
+	{
+		final String prefix = uri.endsWith( "/" ) ? uri : uri + "/";
+		final Iterator< Map.Entry< Key, Entry > > it = entries.entrySet().iterator();
+		while ( it.hasNext() )
+		{
+			final Map.Entry< Key, Entry > e = it.next();
+			final String array = e.getKey().array;
+			if ( array.equals( uri ) || array.startsWith( prefix ) )
+			{
+				bytes -= e.getValue().bytes;
+				it.remove();
+			}
+		}
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format( "GeffChunkCache: %d chunks, %d / %d bytes, %d hits, %d misses, %d evictions",
+				entries.size(), bytes, maxBytes, hits, misses, evictions );
+	}
+
+	/**
+	 * Returns the cached decoded chunk, or decodes and caches it.
+	 *
+	 * @param array
+	 *            the normalized absolute URI of the array.
+	 * @param stamp
+	 *            the current stamp of the chunk on disk. A cached entry with
+	 *            another stamp is reloaded.
+	 * @param loader
+	 *            decodes the chunk, returning an <code>int[]</code> or a
+	 *            <code>double[]</code>. Called without holding the lock.
+	 */
+	@SuppressWarnings( "unchecked" )
+	< T > T get( final String array, final int chunk, final boolean asDouble, final long stamp, final Supplier< T > loader )
+	{
+		final Key key = new Key( array, chunk, asDouble );
+		synchronized ( this )
+		{
+			final Entry entry = entries.get( key );
+			if ( entry != null && entry.stamp == stamp )
+			{
+				hits++;
+				return ( T ) entry.data;
+			}
+			misses++;
+		}
+
+		// Decode outside of the lock, concurrent readers may decode twice.
+		final T data = loader.get();
+		final long size = sizeOf( data );
+		synchronized ( this )
+		{
+			final Entry previous = entries.remove( key );
+			if ( previous != null )
+				bytes -= previous.bytes;
+			if ( size <= maxBytes )
+			{
+				entries.put( key, new Entry( data, size, stamp ) );
+				bytes += size;
+				evict();
+			}
+		}
+		return data;
+	}
+
+	private void evict()
+	{
+		final Iterator< Entry > it = entries.values().iterator();
+		while ( bytes > maxBytes && it.hasNext() )
+		{
+			bytes -= it.next().bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private static long sizeOf( final Object data )
+	{
+		final int length = Array.getLength( data );
+		return 16 + ( long ) length * ( data instanceof double[] ? 8 : 4 );
+	}
+
+	private static final class Key
+	{
+
+		private final String array;
+
+		private final int chunk;
+
+		private final boolean asDouble;
+
+		private final int hash;
+
+		private Key( final String array, final int chunk, final boolean asDouble )
+		{
+			this.array = array;
+			this.chunk = chunk;
+			this.asDouble = asDouble;
+			this.hash = Objects.hash( array, chunk, asDouble );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			if ( !( obj instanceof Key ) )
+				return false;
+			final Key o = ( Key ) obj;
+			return chunk == o.chunk && asDouble == o.asDouble && array.equals( o.array );
+		}
+	}
+
+	private static final class Entry
+	{
+
+		private final Object data;
+
+		private final long bytes;
+
+		private final long stamp;
+
+		private Entry( final Object data, final long bytes, final long stamp )
+		{
+			this.data = data;
+			this.bytes = bytes;
+			this.stamp = stamp;
+		}
+	}
+}
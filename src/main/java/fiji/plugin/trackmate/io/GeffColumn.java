@@ -0,0 +1,598 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+/**
+ * Chunk-wise, read-only access to a single column of a GEFF group.
+ * <p>
+ * A column is either 1D (one value per row) or 2D (a fixed number of
+ * components per row, like the <code>edges/ids</code> array or the node
+ * colors). Only the last decoded chunk is kept by the column, so iterating rows
+ * in storage order streams the column without ever materializing it. Decoded
+ * chunks are also shared with other readers through the
+ * {@link GeffChunkCache}.
+ * <p>
+ * Values are converted on the fly to <code>int</code> or <code>double</code>,
+ * whatever the data type on disk. Columns written with a {@link GeffEncoding}
+ * are decoded transparently.
+ */
+final class GeffColumn
+{
+
+	/**
+	 * GEFF node properties that are not TrackMate features: they are mapped
+	 * to spot attributes explicitly, or cannot be represented as scalar spot
+	 * features.
+	 */
+	static final Set< String > GEFF_NODE_PROPS = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+			"t", "x", "y", "z", "radius", "color", "segment_id", "track_id", "polygon", "covariance2d", "covariance3d" ) ) );
+
+	/**
+	 * GEFF edge properties that are not TrackMate features.
+	 */
+	static final Set< String > GEFF_EDGE_PROPS = Collections.unmodifiableSet( new HashSet<>( Arrays.asList( "distance", "score" ) ) );
+
+	private final N5Reader reader;
+
+	private final String cacheKey;
+
+	private final String path;
+
+	private final DatasetAttributes attributes;
+
+	private final long size;
+
+	private final int width;
+
+	private final int chunkSize;
+
+	private final boolean isInt;
+
+	private final String encoding;
+
+	private final double scale;
+
+	private final double offset;
+
+	private final int missing;
+
+	private final String writeTag;
+
+	private final GeffColumn deltaBases;
+
+	private int cachedChunk = -1;
+
+	private int[] cachedInts;
+
+	private double[] cachedDoubles;
+
+	private GeffColumn( final N5Reader reader, final String path, final DatasetAttributes attributes )
+	{
+		this.reader = reader;
+		this.cacheKey = cacheKey( reader, path );
+		this.path = path;
+		this.attributes = attributes;
+		final long[] dims = attributes.getDimensions();
+		final int[] blockSize = attributes.getBlockSize();
+		// N5 reverses the Zarr dimensions: the row axis is the last one.
+		this.size = dims[ dims.length - 1 ];
+		this.width = dims.length > 1 ? ( int ) dims[ 0 ] : 1;
+		this.chunkSize = blockSize[ blockSize.length - 1 ];
+		this.encoding = reader.getAttribute( path, GeffEncoding.ENCODING_KEY, String.class );
+		if ( GeffEncoding.QUANTIZED.equals( encoding ) )
+		{
+			this.isInt = false;
+			this.scale = reader.getAttribute( path, GeffEncoding.SCALE_KEY, Double.class );
+			this.offset = reader.getAttribute( path, GeffEncoding.OFFSET_KEY, Double.class );
+			this.missing = reader.getAttribute( path, GeffEncoding.MISSING_KEY, Integer.class );
+		}
+		else
+		{
+			this.isInt = isIntType( attributes.getDataType() );
+			this.scale = 1.;
+			this.offset = 0.;
+			this.missing = 0;
+		}
+		this.writeTag = reader.getAttribute( path, GeffColumnWriter.WRITE_TAG_KEY, String.class );
+		this.deltaBases = GeffEncoding.DELTA.equals( encoding )
+				? open( reader, GeffColumnWriter.sibling( path, GeffEncoding.DELTA_BASES ) )
+				: null;
+	}
+
+	/**
+	 * Opens the column stored at the specified path.
+	 *
+	 * @param reader
+	 *            the reader, opened on the GEFF group.
+	 * @param path
+	 *            the path of the column array, relative to the GEFF group,
+	 *            e.g. <code>nodes/props/x/values</code>.
+	 * @return a new column, or <code>null</code> if there is no array at this
+	 *         path.
+	 */
+	static GeffColumn open( final N5Reader reader, final String path )
+	{
+		if ( !reader.datasetExists( path ) )
+			return null;
+		return new GeffColumn( reader, path, reader.getDatasetAttributes( path ) );
+	}
+
+	/**
+	 * Returns <code>true</code> if the core node and edge columns of this
+	 * group are stored as the GEFF library reads them: <code>int32</code> ids,
+	 * frames and segment ids, <code>float64</code> positions, radii, colors,
+	 * distances and scores, without encoding. Groups exported with a compact
+	 * or packed core encoding must be read through the column path.
+	 */
+	static boolean isLibraryCore( final N5Reader reader )
+	{
+		final String[] ints = { "nodes/ids", nodeProp( "t" ), nodeProp( "segment_id" ), "edges/ids" };
+		final String[] doubles = { nodeProp( "x" ), nodeProp( "y" ), nodeProp( "z" ), nodeProp( "radius" ), nodeProp( "color" ),
+				edgeProp( "distance" ), edgeProp( "score" ) };
+		for ( final String path : ints )
+			if ( !isLibraryColumn( reader, path, DataType.INT32 ) )
+				return false;
+		for ( final String path : doubles )
+			if ( !isLibraryColumn( reader, path, DataType.FLOAT64 ) )
+				return false;
+		return true;
+	}
+
+	private static boolean isLibraryColumn( final N5Reader reader, final String path, final DataType dataType )
+	{
+		if ( !reader.datasetExists( path ) )
+			return true;
+		return reader.getDatasetAttributes( path ).getDataType() == dataType
+				&& reader.getAttribute( path, GeffEncoding.ENCODING_KEY, String.class ) == null;
+	}
+
+	/**
+	 * Returns the path of the array storing the values of the node property
+	 * with the specified name.
+	 */
+	static String nodeProp( final String name )
+	{
+		return "nodes/props/" + name + "/values";
+	}
+
+	/**
+	 * Returns the path of the array storing the values of the edge property
+	 * with the specified name.
+	 */
+	static String edgeProp( final String name )
+	{
+		return "edges/props/" + name + "/values";
+	}
+
+	String path()
+	{
+		return path;
+	}
+
+	DatasetAttributes attributes()
+	{
+		return attributes;
+	}
+
+	long size()
+	{
+		return size;
+	}
+
+	int width()
+	{
+		return width;
+	}
+
+	int chunkSize()
+	{
+		return chunkSize;
+	}
+
+	int numChunks()
+	{
+		return ( int ) ( ( size + chunkSize - 1 ) / chunkSize );
+	}
+
+	/**
+	 * Returns the number of valid rows in the specified chunk. Only the last
+	 * chunk can be partially filled.
+	 */
+	int rowsInChunk( final int chunk )
+	{
+		return ( int ) Math.min( chunkSize, size - ( long ) chunk * chunkSize );
+	}
+
+	/**
+	 * Returns <code>true</code> if the values are stored with an integer data
+	 * type.
+	 */
+	boolean isInt()
+	{
+		return isInt;
+	}
+
+	int getInt( final long row )
+	{
+		return getInt( row, 0 );
+	}
+
+	int getInt( final long row, final int component )
+	{
+		final int chunk = load( row );
+		final int index = ( int ) ( row - ( long ) chunk * chunkSize ) * width + component;
+		return isInt ? cachedInts[ index ] : ( int ) cachedDoubles[ index ];
+	}
+
+	double getDouble( final long row )
+	{
+		return getDouble( row, 0 );
+	}
+
+	double getDouble( final long row, final int component )
+	{
+		final int chunk = load( row );
+		final int index = ( int ) ( row - ( long ) chunk * chunkSize ) * width + component;
+		return isInt ? cachedInts[ index ] : cachedDoubles[ index ];
+	}
+
+	/**
+	 * Decodes the specified chunk as <code>int</code>s. The array returned is
+	 * flattened row-major, and may be longer than the number of valid rows in
+	 * the chunk. It is shared through the {@link GeffChunkCache} and must not
+	 * be modified.
+	 */
+	int[] readIntChunk( final int chunk )
+	{
+		return GeffChunkCache.getInstance().get( cacheKey, chunk, false, stamp( chunk ), () -> decodeIntChunk( chunk ) );
+	}
+
+	/**
+	 * Decodes the specified chunk as <code>double</code>s. The array returned
+	 * is flattened row-major, and may be longer than the number of valid rows
+	 * in the chunk. It is shared through the {@link GeffChunkCache} and must
+	 * not be modified.
+	 */
+	double[] readDoubleChunk( final int chunk )
+	{
+		return GeffChunkCache.getInstance().get( cacheKey, chunk, true, stamp( chunk ), () -> decodeDoubleChunk( chunk ) );
+	}
+
+	private int[] decodeIntChunk( final int chunk )
+	{
+		if ( GeffEncoding.QUANTIZED.equals( encoding ) )
+		{
+			final double[] values = readDoubleChunk( chunk );
+			final int[] out = new int[ values.length ];
+			for ( int i = 0; i < values.length; i++ )
+				out[ i ] = ( int ) values[ i ];
+			return out;
+		}
+
+		final int[] values = toInts( attributes.getDataType(), readChunkData( chunk ) );
+		if ( deltaBases != null )
+		{
+			// Prefix sum from the first value of the chunk.
+			final int[] out = new int[ values.length ];
+			out[ 0 ] = baseOf( chunk );
+			final int n = rowsInChunk( chunk );
+			for ( int i = 1; i < n; i++ )
+				out[ i ] = out[ i - 1 ] + values[ i ];
+			return out;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the first value of a delta-encoded chunk. Chunks may be decoded
+	 * concurrently, so the row getters of the bases column are not used.
+	 */
+	private int baseOf( final int chunk )
+	{
+		final int basesChunkSize = deltaBases.chunkSize();
+		return deltaBases.readIntChunk( chunk / basesChunkSize )[ chunk % basesChunkSize ];
+	}
+
+	private double[] decodeDoubleChunk( final int chunk )
+	{
+		if ( GeffEncoding.QUANTIZED.equals( encoding ) )
+		{
+			final int[] values = toInts( attributes.getDataType(), readChunkData( chunk ) );
+			final double[] out = new double[ values.length ];
+			for ( int i = 0; i < values.length; i++ )
+				out[ i ] = values[ i ] == missing ? Double.NaN : offset + values[ i ] * scale;
+			return out;
+		}
+		if ( deltaBases != null )
+			return toDoubles( DataType.INT32, readIntChunk( chunk ) );
+
+		return toDoubles( attributes.getDataType(), readChunkData( chunk ) );
+	}
+
+	/**
+	 * Reads the whole column as <code>int</code>s, flattened row-major. Chunks
+	 * are read concurrently, see {@link GeffStore#forEach(int, IntConsumer)}.
+	 */
+	int[] readAllInts()
+	{
+		final int[] out = new int[ ( int ) size * width ];
+		GeffStore.forEach( numChunks(), chunk -> {
+			final int[] data = readIntChunk( chunk );
+			System.arraycopy( data, 0, out, chunk * chunkSize * width, rowsInChunk( chunk ) * width );
+		} );
+		return out;
+	}
+
+	/**
+	 * Reads the whole column as <code>double</code>s, flattened row-major.
+	 * Chunks are read concurrently, see
+	 * {@link GeffStore#forEach(int, IntConsumer)}.
+	 */
+	double[] readAllDoubles()
+	{
+		final double[] out = new double[ ( int ) size * width ];
+		GeffStore.forEach( numChunks(), chunk -> {
+			final double[] data = readDoubleChunk( chunk );
+			System.arraycopy( data, 0, out, chunk * chunkSize * width, rowsInChunk( chunk ) * width );
+		} );
+		return out;
+	}
+
+	/**
+	 * Loads the chunks holding a range of rows of several columns into the
+	 * {@link GeffChunkCache}, with concurrent requests. Used to scan columns
+	 * of an object store row by row without waiting for each chunk in turn.
+	 * Does nothing if the cache is disabled.
+	 *
+	 * @param columns
+	 *            the columns.
+	 * @param fromRow
+	 *            the first row, inclusive.
+	 * @param toRow
+	 *            the last row, exclusive. Clamped to the column sizes.
+	 * @param asDoubles
+	 *            if <code>true</code>, chunks are decoded as read by
+	 *            {@link #readDoubleChunk(int)}. Otherwise they are decoded as
+	 *            read by the row getters.
+	 */
+	static void prefetch( final Collection< GeffColumn > columns, final long fromRow, final long toRow, final boolean asDoubles )
+	{
+		if ( GeffChunkCache.getInstance().getMaxBytes() == 0 )
+			return;
+
+		final List< GeffColumn > owners = new ArrayList<>();
+		final List< Integer > chunks = new ArrayList<>();
+		for ( final GeffColumn column : columns )
+		{
+			final long to = Math.min( toRow, column.size );
+			if ( fromRow >= to )
+				continue;
+			for ( int chunk = ( int ) ( fromRow / column.chunkSize ); chunk <= ( to - 1 ) / column.chunkSize; chunk++ )
+			{
+				owners.add( column );
+				chunks.add( chunk );
+			}
+		}
+		GeffStore.forEach( chunks.size(), i -> {
+			final GeffColumn column = owners.get( i );
+			if ( column.isInt && !asDoubles )
+				column.readIntChunk( chunks.get( i ) );
+			else
+				column.readDoubleChunk( chunks.get( i ) );
+		} );
+	}
+
+	private int load( final long row )
+	{
+		final int chunk = ( int ) ( row / chunkSize );
+		if ( chunk != cachedChunk )
+		{
+			if ( isInt )
+				cachedInts = readIntChunk( chunk );
+			else
+				cachedDoubles = readDoubleChunk( chunk );
+			cachedChunk = chunk;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Returns the key identifying an array or a group in the
+	 * {@link GeffChunkCache}: its normalized absolute URI, without trailing
+	 * slash. It does not depend on whether the reader is opened on the store
+	 * or on one of its groups.
+	 *
+	 * @param reader
+	 *            the reader.
+	 * @param path
+	 *            the path relative to the reader, or an empty string for the
+	 *            reader root.
+	 */
+	static String cacheKey( final N5Reader reader, final String path )
+	{
+		final StringBuilder key = new StringBuilder( reader.getURI().normalize().toString() );
+		while ( key.length() > 0 && key.charAt( key.length() - 1 ) == '/' )
+			key.setLength( key.length() - 1 );
+		for ( final String part : path.split( "/" ) )
+			if ( !part.isEmpty() && !part.equals( "." ) )
+				key.append( '/' ).append( part );
+		return key.toString();
+	}
+
+	/**
+	 * Returns a stamp of the current content of a chunk. It combines the write
+	 * tag that {@link GeffColumnWriter} stores in the array attributes at each
+	 * write, so that a rewrite of the same size is detected, with the
+	 * modification time and length of the chunk file for file-system stores,
+	 * or with the size of the array for other stores. The stamp of a
+	 * delta-encoded chunk also covers the chunk of its base, since the decoded
+	 * values depend on both.
+	 */
+	long stamp( final int chunk )
+	{
+		final long own = fileStamp( chunk ) * 31 + ( writeTag == null ? 0 : writeTag.hashCode() );
+		if ( deltaBases == null )
+			return own;
+		return own * 31 + deltaBases.stamp( chunk / deltaBases.chunkSize() );
+	}
+
+	private long fileStamp( final int chunk )
+	{
+		final URI uri = reader.getURI();
+		if ( !"file".equals( uri.getScheme() ) )
+			return size;
+
+		final Path dir = Paths.get( uri ).resolve( path );
+		// Zarr chunk keys, with '.' or '/' as dimension separator.
+		final String[] keys = width > 1
+				? new String[] { chunk + ".0", chunk + "/0" }
+				: new String[] { Integer.toString( chunk ) };
+		for ( final String key : keys )
+		{
+			try
+			{
+				final BasicFileAttributes attrs = Files.readAttributes( dir.resolve( key ), BasicFileAttributes.class );
+				return attrs.lastModifiedTime().toMillis() * 1_000_003L + attrs.size();
+			}
+			catch ( final IOException e )
+			{
+				// Try the next key.
+			}
+		}
+		// Missing chunk.
+		return -size - 1;
+	}
+
+	private Object readChunkData( final int chunk )
+	{
+		final long[] gridPosition = width > 1 ? new long[] { 0, chunk } : new long[] { chunk };
+		final DataBlock< ? > block = GeffStore.retry( () -> reader.readBlock( path, attributes, gridPosition ) );
+		if ( block == null )
+		{
+			// Missing chunk: Zarr fill value, which is 0 for GEFF arrays.
+			return attributes.getDataType().createDataBlock( new int[] { chunkSize * width }, gridPosition ).getData();
+		}
+		return block.getData();
+	}
+
+	static boolean isIntType( final DataType dataType )
+	{
+		switch ( dataType )
+		{
+		case FLOAT32:
+		case FLOAT64:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	static int[] toInts( final DataType dataType, final Object data )
+	{
+		if ( data instanceof int[] )
+			return ( int[] ) data;
+
+		if ( data instanceof long[] )
+		{
+			final long[] arr = ( long[] ) data;
+			final int[] out = new int[ arr.length ];
+			for ( int i = 0; i < arr.length; i++ )
+				out[ i ] = ( int ) arr[ i ];
+			return out;
+		}
+		if ( data instanceof short[] )
+		{
+			final short[] arr = ( short[] ) data;
+			final boolean unsigned = dataType == DataType.UINT16;
+			final int[] out = new int[ arr.length ];
+			for ( int i = 0; i < arr.length; i++ )
+				out[ i ] = unsigned ? arr[ i ] & 0xffff : arr[ i ];
+			return out;
+		}
+		if ( data instanceof byte[] )
+		{
+			final byte[] arr = ( byte[] ) data;
+			final boolean unsigned = dataType == DataType.UINT8;
+			final int[] out = new int[ arr.length ];
+			for ( int i = 0; i < arr.length; i++ )
+				out[ i ] = unsigned ? arr[ i ] & 0xff : arr[ i ];
+			return out;
+		}
+		final double[] arr = toDoubles( dataType, data );
+		final int[] out = new int[ arr.length ];
+		for ( int i = 0; i < arr.length; i++ )
+			out[ i ] = ( int ) arr[ i ];
+		return out;
+	}
+
+	static double[] toDoubles( final DataType dataType, final Object data )
+	{
+		if ( data instanceof double[] )
+			return ( double[] ) data;
+
+		if ( data instanceof float[] )
+		{
+			final float[] arr = ( float[] ) data;
+			final double[] out = new double[ arr.length ];
+			for ( int i = 0; i < arr.length; i++ )
+				out[ i ] = arr[ i ];
+			return out;
+		}
+		if ( data instanceof long[] )
+		{
+			final long[] arr = ( long[] ) data;
+			final double[] out = new double[ arr.length ];
+			for ( int i = 0; i < arr.length; i++ )
+				out[ i ] = arr[ i ];
+			return out;
+		}
+		if ( data instanceof int[] || data instanceof short[] || data instanceof byte[] )
+		{
+			final int[] arr = toInts( dataType, data );
+			final double[] out = new double[ arr.length ];
+			for ( int i = 0; i < arr.length; i++ )
+				out[ i ] = arr[ i ];
+			return out;
+		}
+		throw new IllegalArgumentException( "Unsupported data type for a GEFF column: " + dataType );
+	}
+}
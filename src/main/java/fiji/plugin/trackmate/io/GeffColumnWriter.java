@@ -0,0 +1,778 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.DoubleArrayDataBlock;
+import org.janelia.saalfeldlab.n5.FloatArrayDataBlock;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.ShortArrayDataBlock;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Writes columns of a GEFF group chunk by chunk, from primitive arrays.
+ * <p>
+ * In incremental mode, a content hash is computed for every chunk and compared
+ * to the hash stored in the GEFF group attributes by the previous incremental
+ * export. Chunks whose hash did not change are not written. Trailing chunks
+ * are deleted when a column shrinks. The new hashes must be stored with
+ * {@link #writeChunkHashes()} once all the columns are written.
+ * <p>
+ * The chunks of a column are written concurrently, with retries, through
+ * {@link GeffStore}.
+ */
+final class GeffColumnWriter
+{
+
+	/**
+	 * Key of the GEFF group attribute storing the chunk hashes, as a map from
+	 * column path to the list of hashes of its chunks.
+	 */
+	static final String CHUNK_HASHES_KEY = "trackmate_chunk_hashes";
+
+	/**
+	 * Key of the array attribute storing a random tag, changed at each write
+	 * of the array. Readers of stores without modification times use it to
+	 * detect rewritten chunks.
+	 */
+	static final String WRITE_TAG_KEY = "trackmate_write_tag";
+
+	private static final Type CHUNK_HASHES_TYPE = new TypeToken< Map< String, List< String > > >()
+	{}.getType();
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final N5Writer writer;
+
+	private final String group;
+
+	private final int chunkSize;
+
+	private final boolean incremental;
+
+	private final Map< String, List< String > > previousHashes;
+
+	private final Map< String, List< String > > hashes = new LinkedHashMap<>();
+
+	/**
+	 * Creates a column writer.
+	 *
+	 * @param writer
+	 *            the writer, opened on the GEFF group.
+	 * @param chunkSize
+	 *            the number of rows per chunk.
+	 * @param incremental
+	 *            if <code>true</code>, chunks identical to the ones written by
+	 *            the previous incremental export are skipped.
+	 */
+	GeffColumnWriter( final N5Writer writer, final int chunkSize, final boolean incremental )
+	{
+		this( writer, "", chunkSize, incremental );
+	}
+
+	/**
+	 * Creates a column writer for a GEFF group inside the store of the writer,
+	 * so that several groups can be written through the same store.
+	 *
+	 * @param writer
+	 *            the writer.
+	 * @param group
+	 *            the path of the GEFF group relative to the writer, or an
+	 *            empty string if the writer is opened on the group.
+	 * @param chunkSize
+	 *            the number of rows per chunk.
+	 * @param incremental
+	 *            if <code>true</code>, chunks identical to the ones written by
+	 *            the previous incremental export are skipped.
+	 */
+	GeffColumnWriter( final N5Writer writer, final String group, final int chunkSize, final boolean incremental )
+	{
+		this.writer = writer;
+		this.group = group;
+		this.chunkSize = chunkSize;
+		this.incremental = incremental;
+		final Map< String, List< String > > stored = incremental ? readChunkHashes( writer, resolve( "/" ) ) : null;
+		this.previousHashes = stored == null ? Collections.emptyMap() : stored;
+	}
+
+	/**
+	 * Returns the path relative to the writer of a path relative to the GEFF
+	 * group.
+	 */
+	private String resolve( final String path )
+	{
+		return GeffStore.resolve( group, path );
+	}
+
+	/**
+	 * Returns the rows of an <code>int</code> column as written by the
+	 * previous export, flattened row-major, so that the caller can keep
+	 * elements in their rows. Returns <code>null</code> if the writer is not
+	 * incremental or if the column does not exist.
+	 */
+	int[] readPreviousInts( final String path )
+	{
+		if ( !incremental )
+			return null;
+		final GeffColumn column = GeffColumn.open( writer, resolve( path ) );
+		return column == null ? null : column.readAllInts();
+	}
+
+	/**
+	 * Writes a column of <code>int</code>s.
+	 *
+	 * @param path
+	 *            the path of the column array, relative to the GEFF group.
+	 * @param data
+	 *            the column values, flattened row-major.
+	 * @param width
+	 *            the number of components per row.
+	 */
+	void writeInts( final String path, final int[] data, final int width )
+	{
+		write( path, DataType.INT32, data, width );
+		clearEncoding( path );
+	}
+
+	/**
+	 * Writes a column of <code>double</code>s.
+	 *
+	 * @param path
+	 *            the path of the column array, relative to the GEFF group.
+	 * @param data
+	 *            the column values, flattened row-major.
+	 * @param width
+	 *            the number of components per row.
+	 */
+	void writeDoubles( final String path, final double[] data, final int width )
+	{
+		write( path, DataType.FLOAT64, data, width );
+		clearEncoding( path );
+	}
+
+	/**
+	 * Writes a 1D column of <code>int</code> feature values with the specified
+	 * encoding. Values are delta-encoded only if it allows for a narrower
+	 * integer type than the raw values. Missing values are expected to be
+	 * {@link Integer#MIN_VALUE}.
+	 */
+	void writeInts( final String path, final int[] data, final GeffEncoding encoding )
+	{
+		if ( !encoding.isPackIntegers() )
+		{
+			writeInts( path, data, 1 );
+			return;
+		}
+		writePackedInts( path, data );
+	}
+
+	/**
+	 * Writes a column of <code>int</code>s with the narrowest integer type
+	 * that can hold them. This is a plain Zarr array, without encoding.
+	 */
+	void writeNarrowInts( final String path, final int[] data, final int width )
+	{
+		long min = 0;
+		long max = 0;
+		for ( final int v : data )
+		{
+			min = Math.min( min, v );
+			max = Math.max( max, v );
+		}
+		write( path, narrowestIntType( min, max ), data, width );
+		clearEncoding( path );
+	}
+
+	/**
+	 * Writes a column of <code>double</code>s as <code>float32</code>. This is
+	 * a plain Zarr array, without encoding.
+	 */
+	void writeFloats( final String path, final double[] data, final int width )
+	{
+		write( path, DataType.FLOAT32, data, width );
+		clearEncoding( path );
+	}
+
+	/**
+	 * Writes a 1D column of <code>int</code>s, delta-encoded if it allows for
+	 * a narrower integer type than the raw values.
+	 */
+	void writePackedInts( final String path, final int[] data )
+	{
+		int rawMin = 0;
+		int rawMax = 0;
+		for ( final int v : data )
+		{
+			rawMin = Math.min( rawMin, v );
+			rawMax = Math.max( rawMax, v );
+		}
+
+		// Deltas restart at each chunk so that chunks decode independently.
+		final int[] deltas = new int[ data.length ];
+		final int[] bases = new int[ numChunks( data.length ) ];
+		long deltaMin = 0;
+		long deltaMax = 0;
+		for ( int chunk = 0; chunk < bases.length; chunk++ )
+		{
+			final int from = chunk * chunkSize;
+			final int to = Math.min( data.length, from + chunkSize );
+			bases[ chunk ] = data[ from ];
+			for ( int i = from + 1; i < to; i++ )
+			{
+				final long delta = ( long ) data[ i ] - data[ i - 1 ];
+				deltaMin = Math.min( deltaMin, delta );
+				deltaMax = Math.max( deltaMax, delta );
+				deltas[ i ] = ( int ) delta;
+			}
+		}
+
+		final DataType rawType = narrowestIntType( rawMin, rawMax );
+		final DataType deltaType = narrowestIntType( deltaMin, deltaMax );
+		final String basesPath = sibling( path, GeffEncoding.DELTA_BASES );
+		if ( deltaType != null && bytes( deltaType ) < bytes( rawType ) )
+		{
+			clearEncoding( path );
+			write( path, deltaType, deltas, 1 );
+			write( basesPath, DataType.INT32, bases, 1 );
+			writer.setAttribute( resolve( path ), GeffEncoding.ENCODING_KEY, GeffEncoding.DELTA );
+		}
+		else
+		{
+			write( path, rawType, data, 1 );
+			clearEncoding( path );
+		}
+	}
+
+	/**
+	 * Writes a 1D column of <code>double</code> feature values with the
+	 * specified encoding. Missing values are expected to be <code>NaN</code>.
+	 */
+	void writeDoubles( final String path, final double[] data, final GeffEncoding encoding )
+	{
+		if ( encoding.getTolerance() > 0. )
+		{
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for ( final double v : data )
+			{
+				if ( Double.isNaN( v ) )
+					continue;
+				min = Math.min( min, v );
+				max = Math.max( max, v );
+			}
+			if ( min > max )
+				min = max = 0.;
+
+			// Rounding to the nearest step keeps the error below the tolerance.
+			final double step = 2. * encoding.getTolerance();
+			final double levels = Math.ceil( ( max - min ) / step );
+			if ( levels < Integer.MAX_VALUE )
+			{
+				final int missing = -1;
+				final int[] quantized = new int[ data.length ];
+				for ( int i = 0; i < data.length; i++ )
+					quantized[ i ] = Double.isNaN( data[ i ] ) ? missing : ( int ) Math.round( ( data[ i ] - min ) / step );
+
+				clearEncoding( path );
+				write( path, narrowestIntType( missing, ( long ) levels ), quantized, 1 );
+				writer.setAttribute( resolve( path ), GeffEncoding.ENCODING_KEY, GeffEncoding.QUANTIZED );
+				writer.setAttribute( resolve( path ), GeffEncoding.SCALE_KEY, step );
+				writer.setAttribute( resolve( path ), GeffEncoding.OFFSET_KEY, min );
+				writer.setAttribute( resolve( path ), GeffEncoding.MISSING_KEY, missing );
+				return;
+			}
+		}
+
+		if ( encoding.isFloat32() )
+		{
+			clearEncoding( path );
+			write( path, DataType.FLOAT32, data, 1 );
+			writer.setAttribute( resolve( path ), GeffEncoding.ENCODING_KEY, GeffEncoding.FLOAT32 );
+			return;
+		}
+
+		writeDoubles( path, data, 1 );
+	}
+
+	/**
+	 * Writes a column, converting the values to the specified data type.
+	 *
+	 * @param data
+	 *            the column values, an <code>int[]</code> or a
+	 *            <code>double[]</code>, flattened row-major.
+	 */
+	private void write( final String path, final DataType dataType, final Object data, final int width )
+	{
+		final int length = Array.getLength( data );
+		final Target target = prepare( path, dataType, length / width, width );
+		final List< String > chunkHashes = new ArrayList<>( target.numChunks );
+		final List< Integer > changed = new ArrayList<>();
+		final int chunkLength = chunkSize * width;
+		for ( int chunk = 0; chunk < target.numChunks; chunk++ )
+		{
+			final int from = chunk * chunkLength;
+			final int to = Math.min( length, from + chunkLength );
+			final String hash = hash( data, from, to );
+			chunkHashes.add( hash );
+			if ( !target.isUnchanged( chunk, hash ) )
+				changed.add( chunk );
+		}
+
+		// Upload the changed chunks concurrently.
+		GeffStore.forEach( changed.size(), i -> {
+			final int chunk = changed.get( i );
+			final DataBlock< ? > block = createBlock( dataType, target.blockSize, target.gridPosition( chunk ), data, chunk * chunkLength, chunkLength );
+			GeffStore.retry( () -> writer.writeBlock( resolve( path ), target.attributes, block ) );
+		} );
+		finish( path, target, chunkHashes );
+		if ( changed.isEmpty() )
+			invalidate( path );
+		else
+			markWritten( path );
+	}
+
+	/**
+	 * Appends rows of <code>int</code>s at the end of a column, creating it if
+	 * needed.
+	 *
+	 * @see #appendDoubles(String, double[], int)
+	 */
+	void appendInts( final String path, final int[] data, final int width )
+	{
+		append( path, DataType.INT32, data, width );
+	}
+
+	/**
+	 * Appends rows of <code>double</code>s at the end of a column, creating
+	 * it if needed. Only the chunks that receive new rows are written: the
+	 * last, partially filled chunk of the column is read back and completed.
+	 * The array is resized after the chunks are written, so that readers never
+	 * see rows that are not written yet.
+	 * <p>
+	 * Appended columns are not encoded and have no chunk hashes.
+	 *
+	 * @param path
+	 *            the path of the column array, relative to the GEFF group.
+	 * @param data
+	 *            the values to append, flattened row-major.
+	 * @param width
+	 *            the number of components per row.
+	 */
+	void appendDoubles( final String path, final double[] data, final int width )
+	{
+		append( path, DataType.FLOAT64, data, width );
+	}
+
+	private void append( final String path, final DataType dataType, final Object data, final int width )
+	{
+		if ( !writer.datasetExists( resolve( path ) ) )
+		{
+			final int[] blockSize = width > 1 ? new int[] { width, chunkSize } : new int[] { chunkSize };
+			writer.createDataset( resolve( path ), width > 1 ? new long[] { width, 0 } : new long[] { 0 }, blockSize, dataType, new GzipCompression() );
+		}
+
+		// Rows are appended in the chunk layout of the existing array.
+		final DatasetAttributes attributes = writer.getDatasetAttributes( resolve( path ) );
+		checkAppendable( path, attributes, dataType, width );
+		final int[] blockSize = attributes.getBlockSize();
+		final int chunkRows = blockSize[ blockSize.length - 1 ];
+		final long oldRows = attributes.getDimensions()[ attributes.getNumDimensions() - 1 ];
+		final int newRows = Array.getLength( data ) / width;
+		if ( newRows == 0 )
+			return;
+
+		// Prepend the rows of the last partial chunk.
+		final int firstChunk = ( int ) ( oldRows / chunkRows );
+		final int tailRows = ( int ) ( oldRows % chunkRows );
+		final Object values;
+		if ( tailRows == 0 )
+		{
+			values = data;
+		}
+		else
+		{
+			final GeffColumn column = GeffColumn.open( writer, resolve( path ) );
+			final Object tail = data instanceof int[] ? column.readIntChunk( firstChunk ) : column.readDoubleChunk( firstChunk );
+			values = Array.newInstance( data.getClass().getComponentType(), ( tailRows + newRows ) * width );
+			System.arraycopy( tail, 0, values, 0, tailRows * width );
+			System.arraycopy( data, 0, values, tailRows * width, newRows * width );
+		}
+
+		final int chunkLength = chunkRows * width;
+		final int length = Array.getLength( values );
+		GeffStore.forEach( ( length + chunkLength - 1 ) / chunkLength, i -> {
+			final int chunk = firstChunk + i;
+			final long[] gridPosition = width > 1 ? new long[] { 0, chunk } : new long[] { chunk };
+			final DataBlock< ? > block = createBlock( attributes.getDataType(), blockSize, gridPosition, values, i * chunkLength, chunkLength );
+			GeffStore.retry( () -> writer.writeBlock( resolve( path ), attributes, block ) );
+		} );
+
+		final long rows = oldRows + newRows;
+		final long[] dims = width > 1 ? new long[] { width, rows } : new long[] { rows };
+		writer.setDatasetAttributes( resolve( path ), new DatasetAttributes( dims, blockSize, attributes.getDataType(), attributes.getCompression() ) );
+		markWritten( path );
+	}
+
+	/**
+	 * Checks that rows can be appended to an existing column without losing
+	 * precision: the column must store the values with the same data type and
+	 * row width, one row per block column, and must not be encoded.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the column does not match.
+	 */
+	private void checkAppendable( final String path, final DatasetAttributes attributes, final DataType dataType, final int width )
+	{
+		final long[] dims = attributes.getDimensions();
+		final int[] blockSize = attributes.getBlockSize();
+		final boolean sameShape = width > 1
+				? dims.length == 2 && dims[ 0 ] == width && blockSize[ 0 ] == width
+				: dims.length == 1;
+		final boolean encoded = writer.getAttribute( resolve( path ), GeffEncoding.ENCODING_KEY, String.class ) != null;
+		if ( attributes.getDataType() != dataType || !sameShape || encoded )
+			throw new IllegalArgumentException( "Cannot append " + dataType + " rows of width " + width + " to the column " + path
+					+ ", stored as " + attributes.getDataType() + " with dimensions " + Arrays.toString( dims )
+					+ ( encoded ? " and encoded." : "." ) );
+	}
+
+	/**
+	 * Removes the encoding attributes of a column, and the arrays they refer
+	 * to.
+	 */
+	private void clearEncoding( final String path )
+	{
+		if ( writer.getAttribute( resolve( path ), GeffEncoding.ENCODING_KEY, String.class ) == null )
+			return;
+
+		writer.removeAttribute( resolve( path ), GeffEncoding.ENCODING_KEY );
+		writer.removeAttribute( resolve( path ), GeffEncoding.SCALE_KEY );
+		writer.removeAttribute( resolve( path ), GeffEncoding.OFFSET_KEY );
+		writer.removeAttribute( resolve( path ), GeffEncoding.MISSING_KEY );
+		final String basesPath = sibling( path, GeffEncoding.DELTA_BASES );
+		if ( writer.exists( resolve( basesPath ) ) )
+			writer.remove( resolve( basesPath ) );
+		invalidate( path );
+	}
+
+	/**
+	 * Stores a new write tag in the attributes of a column whose chunks were
+	 * written, and removes them from the cache.
+	 */
+	private void markWritten( final String path )
+	{
+		writer.setAttribute( resolve( path ), WRITE_TAG_KEY, Long.toHexString( ThreadLocalRandom.current().nextLong() ) );
+		invalidate( path );
+	}
+
+	/**
+	 * Removes the chunks of a column, or of the columns of a group, from the
+	 * cache.
+	 */
+	private void invalidate( final String path )
+	{
+		GeffChunkCache.getInstance().invalidate( GeffColumn.cacheKey( writer, resolve( path ) ) );
+	}
+
+	/**
+	 * Returns the path of an array next to the specified one, in the same
+	 * group.
+	 */
+	static String sibling( final String path, final String name )
+	{
+		return path.substring( 0, path.lastIndexOf( '/' ) + 1 ) + name;
+	}
+
+	private static String hash( final Object data, final int from, final int to )
+	{
+		long h = FNV_OFFSET;
+		if ( data instanceof int[] )
+		{
+			final int[] arr = ( int[] ) data;
+			for ( int i = from; i < to; i++ )
+				h = ( h ^ arr[ i ] ) * FNV_PRIME;
+		}
+		else
+		{
+			final double[] arr = ( double[] ) data;
+			for ( int i = from; i < to; i++ )
+				h = ( h ^ Double.doubleToLongBits( arr[ i ] ) ) * FNV_PRIME;
+		}
+		return Long.toHexString( h ) + ":" + ( to - from );
+	}
+
+	/**
+	 * Creates a block from a slice of the values, padded with zeros.
+	 */
+	private static DataBlock< ? > createBlock( final DataType dataType, final int[] blockSize, final long[] gridPosition, final Object data, final int from, final int chunkLength )
+	{
+		final int length = Math.max( 0, Math.min( Array.getLength( data ) - from, chunkLength ) );
+		final double[] doubles = data instanceof double[] ? ( double[] ) data : null;
+		final int[] ints = data instanceof int[] ? ( int[] ) data : null;
+		switch ( dataType )
+		{
+		case INT8:
+		{
+			final byte[] block = new byte[ chunkLength ];
+			for ( int i = 0; i < length; i++ )
+				block[ i ] = ( byte ) ints[ from + i ];
+			return new ByteArrayDataBlock( blockSize, gridPosition, block );
+		}
+		case INT16:
+		{
+			final short[] block = new short[ chunkLength ];
+			for ( int i = 0; i < length; i++ )
+				block[ i ] = ( short ) ints[ from + i ];
+			return new ShortArrayDataBlock( blockSize, gridPosition, block );
+		}
+		case INT32:
+		{
+			final int[] block = new int[ chunkLength ];
+			System.arraycopy( ints, from, block, 0, length );
+			return new IntArrayDataBlock( blockSize, gridPosition, block );
+		}
+		case FLOAT32:
+		{
+			final float[] block = new float[ chunkLength ];
+			for ( int i = 0; i < length; i++ )
+				block[ i ] = ( float ) doubles[ from + i ];
+			return new FloatArrayDataBlock( blockSize, gridPosition, block );
+		}
+		case FLOAT64:
+		{
+			final double[] block = new double[ chunkLength ];
+			System.arraycopy( doubles, from, block, 0, length );
+			return new DoubleArrayDataBlock( blockSize, gridPosition, block );
+		}
+		default:
+			throw new IllegalArgumentException( "Unsupported data type for a GEFF column: " + dataType );
+		}
+	}
+
+	/**
+	 * Returns the narrowest signed integer type that can store all the values
+	 * in the specified range, or <code>null</code> if they do not fit in 32
+	 * bits.
+	 */
+	private static DataType narrowestIntType( final long min, final long max )
+	{
+		if ( min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE )
+			return DataType.INT8;
+		if ( min >= Short.MIN_VALUE && max <= Short.MAX_VALUE )
+			return DataType.INT16;
+		if ( min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE )
+			return DataType.INT32;
+		return null;
+	}
+
+	private static int bytes( final DataType dataType )
+	{
+		switch ( dataType )
+		{
+		case INT8:
+			return 1;
+		case INT16:
+			return 2;
+		default:
+			return 4;
+		}
+	}
+
+	/**
+	 * Returns the paths of the columns written so far.
+	 */
+	Set< String > written()
+	{
+		return hashes.keySet();
+	}
+
+	/**
+	 * Removes the property arrays of the specified group that were not
+	 * written by this writer, e.g. features that are no longer in the model.
+	 *
+	 * @param propsGroup
+	 *            the property group, <code>nodes/props</code> or
+	 *            <code>edges/props</code>.
+	 */
+	void removeUnwrittenProps( final String propsGroup )
+	{
+		removeUnwrittenProps( propsGroup, Collections.emptySet() );
+	}
+
+	/**
+	 * Removes the property arrays of the specified group that were not
+	 * written by this writer, except the specified ones, e.g. the core
+	 * properties written by the GEFF library.
+	 *
+	 * @param propsGroup
+	 *            the property group, <code>nodes/props</code> or
+	 *            <code>edges/props</code>.
+	 * @param kept
+	 *            the names of the properties to keep.
+	 */
+	void removeUnwrittenProps( final String propsGroup, final Set< String > kept )
+	{
+		if ( !writer.exists( resolve( propsGroup ) ) )
+			return;
+
+		for ( final String name : writer.list( resolve( propsGroup ) ) )
+			if ( !kept.contains( name ) && !hashes.containsKey( propsGroup + "/" + name + "/values" ) )
+			{
+				writer.remove( resolve( propsGroup + "/" + name ) );
+				invalidate( propsGroup + "/" + name );
+			}
+	}
+
+	/**
+	 * Stores the hashes of the chunks written so far in the GEFF group
+	 * attributes.
+	 */
+	void writeChunkHashes()
+	{
+		writer.setAttribute( resolve( "/" ), CHUNK_HASHES_KEY, hashes );
+	}
+
+	/**
+	 * Removes the chunk hashes from the GEFF group attributes. This must be
+	 * called after writing columns without this class, so that the next
+	 * incremental export does not rely on stale hashes.
+	 */
+	static void clearChunkHashes( final N5Writer writer )
+	{
+		clearChunkHashes( writer, "/" );
+	}
+
+	/**
+	 * Removes the chunk hashes from the attributes of the GEFF group at the
+	 * specified path of the writer.
+	 */
+	static void clearChunkHashes( final N5Writer writer, final String group )
+	{
+		if ( readChunkHashes( writer, group ) != null )
+			writer.removeAttribute( group, CHUNK_HASHES_KEY );
+	}
+
+	private static Map< String, List< String > > readChunkHashes( final N5Writer writer, final String group )
+	{
+		return writer.getAttribute( group, CHUNK_HASHES_KEY, CHUNK_HASHES_TYPE );
+	}
+
+	/**
+	 * Creates or resizes the column array. Existing arrays are reused if their
+	 * layout matches, otherwise they are recreated and their previous hashes
+	 * are discarded.
+	 */
+	private Target prepare( final String path, final DataType dataType, final int rows, final int width )
+	{
+		final long[] dims = width > 1 ? new long[] { width, rows } : new long[] { rows };
+		final int[] blockSize = width > 1 ? new int[] { width, chunkSize } : new int[] { chunkSize };
+
+		List< String > previous = null;
+		int previousNumChunks = 0;
+		if ( writer.datasetExists( resolve( path ) ) )
+		{
+			final DatasetAttributes old = writer.getDatasetAttributes( resolve( path ) );
+			if ( old.getDataType() == dataType && Arrays.equals( old.getBlockSize(), blockSize ) )
+			{
+				previous = previousHashes.get( path );
+				previousNumChunks = numChunks( old.getDimensions()[ old.getNumDimensions() - 1 ] );
+				if ( !Arrays.equals( old.getDimensions(), dims ) )
+					writer.setDatasetAttributes( resolve( path ), new DatasetAttributes( dims, blockSize, dataType, old.getCompression() ) );
+			}
+			else
+			{
+				writer.remove( resolve( path ) );
+			}
+		}
+		if ( !writer.datasetExists( resolve( path ) ) )
+			writer.createDataset( resolve( path ), dims, blockSize, dataType, new GzipCompression() );
+
+		return new Target( writer.getDatasetAttributes( resolve( path ) ), blockSize, numChunks( rows ), previous, previousNumChunks );
+	}
+
+	private void finish( final String path, final Target target, final List< String > chunkHashes )
+	{
+		// Trim trailing chunks if the column shrank.
+		for ( int chunk = target.numChunks; chunk < target.previousNumChunks; chunk++ )
+		{
+			final long[] gridPosition = target.gridPosition( chunk );
+			GeffStore.retry( () -> writer.deleteBlock( resolve( path ), gridPosition ) );
+		}
+		hashes.put( path, chunkHashes );
+	}
+
+	private int numChunks( final long rows )
+	{
+		return ( int ) ( ( rows + chunkSize - 1 ) / chunkSize );
+	}
+
+	private static final class Target
+	{
+
+		private final DatasetAttributes attributes;
+
+		private final int[] blockSize;
+
+		private final int numChunks;
+
+		private final List< String > previous;
+
+		private final int previousNumChunks;
+
+		private Target( final DatasetAttributes attributes, final int[] blockSize, final int numChunks, final List< String > previous, final int previousNumChunks )
+		{
+			this.attributes = attributes;
+			this.blockSize = blockSize;
+			this.numChunks = numChunks;
+			this.previous = previous;
+			this.previousNumChunks = previousNumChunks;
+		}
+
+		private long[] gridPosition( final int chunk )
+		{
+			return blockSize.length > 1 ? new long[] { 0, chunk } : new long[] { chunk };
+		}
+
+		private boolean isUnchanged( final int chunk, final String hash )
+		{
+			return previous != null && chunk < previous.size() && hash.equals( previous.get( chunk ) );
+		}
+	}
+}
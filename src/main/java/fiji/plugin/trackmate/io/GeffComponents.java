@@ -0,0 +1,109 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.util.Arrays;
+
+/**
+ * Labels the connected components of a graph stored as edge columns, with a
+ * union-find over the node rows. Used to rebuild tracks from GEFF files that
+ * have no <code>segment_id</code> column.
+ */
+final class GeffComponents
+{
+
+	private GeffComponents()
+	{}
+
+	/**
+	 * Labels the connected components of the graph.
+	 *
+	 * @param nNodes
+	 *            the number of nodes.
+	 * @param edgeSources
+	 *            the row of the source node of each edge, or -1 if unknown.
+	 * @param edgeTargets
+	 *            the row of the target node of each edge, or -1 if unknown.
+	 * @return the component of each node row, numbered from 0 in the order of
+	 *         their first edge, or -1 for isolated nodes.
+	 */
+	static int[] label( final int nNodes, final int[] edgeSources, final int[] edgeTargets )
+	{
+		final int[] parents = new int[ nNodes ];
+		for ( int i = 0; i < nNodes; i++ )
+			parents[ i ] = i;
+		for ( int e = 0; e < edgeSources.length; e++ )
+			if ( edgeSources[ e ] >= 0 && edgeTargets[ e ] >= 0 )
+				union( parents, edgeSources[ e ], edgeTargets[ e ] );
+
+		final int[] componentOfRoot = new int[ nNodes ];
+		Arrays.fill( componentOfRoot, -1 );
+		int nComponents = 0;
+		for ( int e = 0; e < edgeSources.length; e++ )
+		{
+			if ( edgeSources[ e ] < 0 || edgeTargets[ e ] < 0 )
+				continue;
+			final int root = find( parents, edgeSources[ e ] );
+			if ( componentOfRoot[ root ] < 0 )
+				componentOfRoot[ root ] = nComponents++;
+		}
+		final int[] out = new int[ nNodes ];
+		for ( int i = 0; i < nNodes; i++ )
+			out[ i ] = componentOfRoot[ find( parents, i ) ];
+		return out;
+	}
+
+	/**
+	 * Returns the number of components in the specified labels.
+	 */
+	static int count( final int[] labels )
+	{
+		int max = -1;
+		for ( final int label : labels )
+			max = Math.max( max, label );
+		return max + 1;
+	}
+
+	private static int find( final int[] parents, final int i )
+	{
+		int root = i;
+		while ( parents[ root ] != root )
+			root = parents[ root ];
+		// Path compression.
+		int j = i;
+		while ( parents[ j ] != root )
+		{
+			final int next = parents[ j ];
+			parents[ j ] = root;
+			j = next;
+		}
+		return root;
+	}
+
+	private static void union( final int[] parents, final int a, final int b )
+	{
+		final int ra = find( parents, a );
+		final int rb = find( parents, b );
+		if ( ra != rb )
+			parents[ Math.max( ra, rb ) ] = Math.min( ra, rb );
+	}
+}
@@ -0,0 +1,187 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+/**
+ * Storage encodings of the columns of a GEFF file.
+ * <p>
+ * The encoding of each column is recorded in the column attributes, and is
+ * decoded transparently by {@link TrackMateGeffReader}.
+ * <ul>
+ * <li>Double features are stored as <code>float32</code>, or quantized to
+ * fixed-point integers with a declared absolute tolerance.
+ * <li>Integer features are delta-encoded when it makes the values smaller,
+ * and stored with the narrowest integer type that can hold them.
+ * <li>With compact core columns, the positions, radius, color and edge
+ * distance and score are stored as <code>float32</code>, and the node and
+ * edge ids, frames and segment ids with the narrowest integer type. These are
+ * plain Zarr data types, so the file stays readable by other GEFF readers.
+ * <li>With packed core columns, an explicit opt-in, the node ids, frames and
+ * segment ids are also delta-encoded, and the positions and radius are
+ * quantized with the tolerance. Only TrackMate can read these columns.
+ * </ul>
+ * The core columns are written by the GEFF library when spots have polygons,
+ * and then always stored at full width.
+ */
+public class GeffEncoding
+{
+
+	/**
+	 * Key of the column attribute storing the encoding of a column.
+	 */
+	static final String ENCODING_KEY = "trackmate_encoding";
+
+	static final String FLOAT32 = "float32";
+
+	static final String QUANTIZED = "quantized";
+
+	static final String DELTA = "delta";
+
+	static final String SCALE_KEY = "trackmate_scale";
+
+	static final String OFFSET_KEY = "trackmate_offset";
+
+	static final String MISSING_KEY = "trackmate_missing";
+
+	/**
+	 * Name of the array storing the first value of each chunk of a
+	 * delta-encoded column, next to its <code>values</code> array.
+	 */
+	static final String DELTA_BASES = "delta_bases";
+
+	private final boolean float32;
+
+	private final double tolerance;
+
+	private final boolean packIntegers;
+
+	private final boolean compactCore;
+
+	private final boolean packCore;
+
+	/**
+	 * Creates an encoding of the feature columns. The core columns are stored
+	 * at full width.
+	 *
+	 * @param float32
+	 *            whether to store double features as <code>float32</code>.
+	 * @param tolerance
+	 *            if strictly positive, double features are quantized so that
+	 *            the decoded values are within this tolerance of the original
+	 *            ones. Quantization takes precedence over <code>float32</code>,
+	 *            which is used as a fallback when the value range is too large.
+	 * @param packIntegers
+	 *            whether to delta-encode integer features and store them with
+	 *            the narrowest integer type.
+	 */
+	public GeffEncoding( final boolean float32, final double tolerance, final boolean packIntegers )
+	{
+		this( float32, tolerance, packIntegers, false, false );
+	}
+
+	/**
+	 * Creates an encoding of the feature and core columns.
+	 *
+	 * @param float32
+	 *            whether to store double features as <code>float32</code>.
+	 * @param tolerance
+	 *            if strictly positive, double features are quantized so that
+	 *            the decoded values are within this tolerance of the original
+	 *            ones.
+	 * @param packIntegers
+	 *            whether to delta-encode integer features and store them with
+	 *            the narrowest integer type.
+	 * @param compactCore
+	 *            whether to store the core columns with <code>float32</code>
+	 *            and the narrowest integer types, as plain GEFF arrays.
+	 * @param packCore
+	 *            whether to also delta-encode the core integer columns and
+	 *            quantize the positions and radius with the tolerance. Files
+	 *            written this way can only be read by TrackMate. Implies
+	 *            <code>compactCore</code>.
+	 */
+	public GeffEncoding( final boolean float32, final double tolerance, final boolean packIntegers, final boolean compactCore, final boolean packCore )
+	{
+		this.float32 = float32;
+		this.tolerance = tolerance;
+		this.packIntegers = packIntegers;
+		this.compactCore = compactCore || packCore;
+		this.packCore = packCore;
+	}
+
+	/**
+	 * Full-width storage, as in the GEFF library.
+	 */
+	public static GeffEncoding none()
+	{
+		return new GeffEncoding( false, 0., false );
+	}
+
+	/**
+	 * Quantized double features with the specified tolerance, packed integer
+	 * features, and compact core columns that other GEFF readers can still
+	 * read.
+	 */
+	public static GeffEncoding compact( final double tolerance )
+	{
+		return new GeffEncoding( true, tolerance, true, true, false );
+	}
+
+	/**
+	 * Like {@link #compact(double)}, with packed core columns as well. Only
+	 * TrackMate can read the resulting files.
+	 */
+	public static GeffEncoding packed( final double tolerance )
+	{
+		return new GeffEncoding( true, tolerance, true, true, true );
+	}
+
+	public boolean isFloat32()
+	{
+		return float32;
+	}
+
+	public double getTolerance()
+	{
+		return tolerance;
+	}
+
+	public boolean isPackIntegers()
+	{
+		return packIntegers;
+	}
+
+	public boolean isCompactCore()
+	{
+		return compactCore;
+	}
+
+	public boolean isPackCore()
+	{
+		return packCore;
+	}
+
+	boolean isNone()
+	{
+		return !float32 && tolerance <= 0. && !packIntegers && !compactCore;
+	}
+}
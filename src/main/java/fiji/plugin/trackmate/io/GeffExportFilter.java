@@ -0,0 +1,161 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.SelectionModel;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackModel;
+
+/**
+ * Selects the spots and edges of a model that are exported to GEFF.
+ * <p>
+ * Filters are applied while the model is scanned for export, so no filtered
+ * copy of the model is made. Only the visible spots and the edges of the
+ * visible tracks are scanned, and filters select among them. An edge is
+ * exported only if it passes the edge filter itself and both its end-points
+ * were exported by the spot scan.
+ */
+public class GeffExportFilter
+{
+
+	private final Predicate< Spot > spotFilter;
+
+	private final Predicate< Integer > trackFilter;
+
+	private final Predicate< DefaultWeightedEdge > edgeFilter;
+
+	private GeffExportFilter( final Predicate< Spot > spotFilter, final Predicate< Integer > trackFilter, final Predicate< DefaultWeightedEdge > edgeFilter )
+	{
+		this.spotFilter = spotFilter;
+		this.trackFilter = trackFilter;
+		this.edgeFilter = edgeFilter;
+	}
+
+	/**
+	 * Exports all the visible spots, and the edges of the visible tracks
+	 * between them.
+	 */
+	public static GeffExportFilter all()
+	{
+		return new GeffExportFilter( s -> true, t -> true, e -> true );
+	}
+
+	/**
+	 * Exports only the spots and edges of the visible tracks. Spots that do
+	 * not belong to a track are not exported.
+	 *
+	 * @param model
+	 *            the model to export.
+	 */
+	public static GeffExportFilter visibleTracks( final Model model )
+	{
+		final TrackModel trackModel = model.getTrackModel();
+		return new GeffExportFilter(
+				s -> {
+					final Integer trackID = trackModel.trackIDOf( s );
+					return trackID != null && trackModel.isVisible( trackID );
+				},
+				trackModel::isVisible,
+				e -> true );
+	}
+
+	/**
+	 * Exports only the current selection: the selected spots, and the selected
+	 * edges with their end-points.
+	 *
+	 * @param selectionModel
+	 *            the selection to export.
+	 */
+	public static GeffExportFilter selection( final SelectionModel selectionModel )
+	{
+		final TrackModel trackModel = selectionModel.getModel().getTrackModel();
+		final Set< Spot > spots = new HashSet<>( selectionModel.getSpotSelection() );
+		final Set< DefaultWeightedEdge > edges = new HashSet<>( selectionModel.getEdgeSelection() );
+		for ( final DefaultWeightedEdge edge : edges )
+		{
+			spots.add( trackModel.getEdgeSource( edge ) );
+			spots.add( trackModel.getEdgeTarget( edge ) );
+		}
+		return new GeffExportFilter( spots::contains, t -> true, edges::contains );
+	}
+
+	/**
+	 * Exports only the spots in a range of frames, and the edges between them.
+	 *
+	 * @param minFrame
+	 *            the first frame to export, inclusive.
+	 * @param maxFrame
+	 *            the last frame to export, inclusive.
+	 */
+	public static GeffExportFilter frames( final int minFrame, final int maxFrame )
+	{
+		return new GeffExportFilter(
+				s -> {
+					final int frame = s.getFeature( Spot.FRAME ).intValue();
+					return frame >= minFrame && frame <= maxFrame;
+				},
+				t -> true,
+				e -> true );
+	}
+
+	/**
+	 * Returns a filter that exports only what both this filter and the
+	 * specified one export.
+	 */
+	public GeffExportFilter and( final GeffExportFilter other )
+	{
+		return new GeffExportFilter(
+				spotFilter.and( other.spotFilter ),
+				trackFilter.and( other.trackFilter ),
+				edgeFilter.and( other.edgeFilter ) );
+	}
+
+	public boolean test( final Spot spot )
+	{
+		return spotFilter.test( spot );
+	}
+
+	/**
+	 * Returns <code>false</code> if no edge of the specified track can be
+	 * exported, so that the track can be skipped altogether.
+	 */
+	public boolean testTrack( final Integer trackID )
+	{
+		return trackFilter.test( trackID );
+	}
+
+	/**
+	 * Tests an edge on its own. The caller also checks that both its
+	 * end-points are exported.
+	 */
+	public boolean test( final DefaultWeightedEdge edge )
+	{
+		return edgeFilter.test( edge );
+	}
+}
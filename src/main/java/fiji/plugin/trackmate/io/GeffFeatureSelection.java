@@ -0,0 +1,95 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Selects the spot and edge features written to or read from a GEFF file.
+ * <p>
+ * The feature columns that are not selected are never touched on disk. The
+ * GEFF core properties (position, frame, radius, ...) are not features and are
+ * always written and read. GEFF files have no track columns, so track
+ * features are not stored and cannot be selected.
+ */
+public class GeffFeatureSelection
+{
+
+	private final Set< String > spotFeatures;
+
+	private final Set< String > edgeFeatures;
+
+	/**
+	 * Creates a feature selection.
+	 *
+	 * @param spotFeatures
+	 *            the keys of the spot features to select, or <code>null</code>
+	 *            to select all of them.
+	 * @param edgeFeatures
+	 *            the keys of the edge features to select, or <code>null</code>
+	 *            to select all of them.
+	 */
+	public GeffFeatureSelection( final Collection< String > spotFeatures, final Collection< String > edgeFeatures )
+	{
+		this.spotFeatures = spotFeatures == null ? null : new HashSet<>( spotFeatures );
+		this.edgeFeatures = edgeFeatures == null ? null : new HashSet<>( edgeFeatures );
+	}
+
+	/**
+	 * Selects all the features.
+	 */
+	public static GeffFeatureSelection all()
+	{
+		return new GeffFeatureSelection( null, null );
+	}
+
+	/**
+	 * Selects no feature at all. Only the GEFF core properties are written or
+	 * read.
+	 */
+	public static GeffFeatureSelection none()
+	{
+		return new GeffFeatureSelection( Collections.emptySet(), Collections.emptySet() );
+	}
+
+	/**
+	 * Selects only the specified spot features, and no edge feature.
+	 */
+	public static GeffFeatureSelection spots( final String... spotFeatures )
+	{
+		return new GeffFeatureSelection( Arrays.asList( spotFeatures ), Collections.emptySet() );
+	}
+
+	public boolean isSpotFeatureSelected( final String feature )
+	{
+		return spotFeatures == null || spotFeatures.contains( feature );
+	}
+
+	public boolean isEdgeFeatureSelected( final String feature )
+	{
+		return edgeFeatures == null || edgeFeatures.contains( feature );
+	}
+}
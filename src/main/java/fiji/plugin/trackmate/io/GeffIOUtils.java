@@ -10,6 +10,36 @@ import ij.ImagePlus;
 public class GeffIOUtils
 {
 
+	/**
+	 * Returns the path to the GEFF group inside the specified Zarr file.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @return the path to the GEFF group.
+	 */
+	public static final String geffPath( final String zarrPath )
+	{
+		return geffPath( zarrPath, TrackMateGeffWriter.GEFF_PREFIX );
+	}
+
+	/**
+	 * Returns the path to a named GEFF group of a Zarr store, for stores that
+	 * hold several GEFF groups.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param group
+	 *            the name of the GEFF group, without '/'.
+	 * @return the path to the GEFF group.
+	 */
+	public static final String geffPath( final String zarrPath, final String group )
+	{
+		if ( group == null || group.isEmpty() || group.contains( "/" ) )
+			throw new IllegalArgumentException( "Invalid GEFF group name: " + group );
+
+		return zarrPath.endsWith( "/" ) ? zarrPath + group : zarrPath + "/" + group;
+	}
+
 	/**
 	 * Converts a unit string to the OME-Zarr format.
 	 * <p>
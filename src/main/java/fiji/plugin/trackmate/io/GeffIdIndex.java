@@ -0,0 +1,81 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.util.Arrays;
+
+/**
+ * Maps GEFF node ids to their row in the node arrays.
+ * <p>
+ * The index is a single sorted array of primitive keys, each packing a node id
+ * with its row, so that it stays compact for large graphs and requires no
+ * boxing.
+ */
+final class GeffIdIndex
+{
+
+	private final long[] keys;
+
+	private GeffIdIndex( final long[] keys )
+	{
+		this.keys = keys;
+	}
+
+	/**
+	 * Builds the index for the specified node ids, given in row order.
+	 */
+	static GeffIdIndex of( final int[] ids )
+	{
+		final long[] keys = new long[ ids.length ];
+		for ( int row = 0; row < ids.length; row++ )
+			keys[ row ] = ( ( long ) ids[ row ] << 32 ) | ( row & 0xffffffffL );
+		Arrays.sort( keys );
+		return new GeffIdIndex( keys );
+	}
+
+	int size()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Returns the row of the node with the specified id, or <code>-1</code> if
+	 * there is no such node.
+	 */
+	int rowOf( final int id )
+	{
+		int lo = 0;
+		int hi = keys.length - 1;
+		while ( lo <= hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			final int midId = ( int ) ( keys[ mid ] >> 32 );
+			if ( midId < id )
+				lo = mid + 1;
+			else if ( midId > id )
+				hi = mid - 1;
+			else
+				return ( int ) keys[ mid ];
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+/**
+ * Indexes written next to the columns of a GEFF file during an export.
+ * <p>
+ * The indexes are built from the primitive arrays of the export scan, and
+ * only reflect the columns written by that export. Exports without an index
+ * remove the previous one, that would be stale.
+ * <ul>
+ * <li>The spatial index is a per-frame uniform grid of the nodes, queried with
+ * {@link TrackMateGeffReader#openSpatialIndex(String)}. See
+ * {@link GeffSpatialIndex}.
+ * <li>The lineage is the parent and children adjacency of the nodes, as
+ * compressed sparse row arrays, loaded with
+ * {@link TrackMateGeffReader#openLineage(String)}. See {@link GeffLineage}.
+ * </ul>
+ */
+public class GeffIndexes
+{
+
+	private final boolean spatialIndex;
+
+	private final double cellSize;
+
+	private final boolean lineage;
+
+	/**
+	 * Creates the index options of an export, without lineage.
+	 *
+	 * @param spatialIndex
+	 *            whether to write the spatial index.
+	 * @param cellSize
+	 *            the size of the grid cells of the spatial index, in physical
+	 *            units. If not strictly positive, 4 times the mean spot radius
+	 *            is used.
+	 */
+	public GeffIndexes( final boolean spatialIndex, final double cellSize )
+	{
+		this( spatialIndex, cellSize, false );
+	}
+
+	/**
+	 * Creates the index options of an export.
+	 *
+	 * @param spatialIndex
+	 *            whether to write the spatial index.
+	 * @param cellSize
+	 *            the size of the grid cells of the spatial index, in physical
+	 *            units. If not strictly positive, 4 times the mean spot radius
+	 *            is used.
+	 * @param lineage
+	 *            whether to write the lineage arrays.
+	 */
+	public GeffIndexes( final boolean spatialIndex, final double cellSize, final boolean lineage )
+	{
+		this.spatialIndex = spatialIndex;
+		this.cellSize = cellSize;
+		this.lineage = lineage;
+	}
+
+	/**
+	 * No index.
+	 */
+	public static GeffIndexes none()
+	{
+		return new GeffIndexes( false, 0. );
+	}
+
+	/**
+	 * A spatial index with the specified cell size.
+	 *
+	 * @see #GeffIndexes(boolean, double)
+	 */
+	public static GeffIndexes spatial( final double cellSize )
+	{
+		return new GeffIndexes( true, cellSize );
+	}
+
+	/**
+	 * The lineage arrays only.
+	 */
+	public static GeffIndexes lineage()
+	{
+		return new GeffIndexes( false, 0., true );
+	}
+
+	/**
+	 * The spatial index, with the specified cell size, and the lineage
+	 * arrays.
+	 */
+	public static GeffIndexes all( final double cellSize )
+	{
+		return new GeffIndexes( true, cellSize, true );
+	}
+
+	public boolean isSpatialIndex()
+	{
+		return spatialIndex;
+	}
+
+	public double getCellSize()
+	{
+		return cellSize;
+	}
+
+	public boolean isLineage()
+	{
+		return lineage;
+	}
+
+	boolean isNone()
+	{
+		return !spatialIndex && !lineage;
+	}
+}
@@ -0,0 +1,322 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+
+/**
+ * Lineage adjacency of a GEFF graph, stored as compressed sparse row (CSR)
+ * arrays next to the edge columns.
+ * <p>
+ * Edges are oriented forward in time: the parent of an edge is the node with
+ * the smallest frame. The <code>lineage</code> group contains 4 arrays,
+ * indexed by node row:
+ * <ul>
+ * <li><code>children_offsets</code> and <code>children</code>: the children of
+ * the node at row <code>i</code> are at rows
+ * <code>children[children_offsets[i]]</code> to
+ * <code>children[children_offsets[i+1]-1]</code>.
+ * <li><code>parents_offsets</code> and <code>parents</code>: likewise for the
+ * parents.
+ * </ul>
+ * Lineage queries are answered directly on these primitive arrays, without
+ * building a graph. Nodes are identified by their GEFF id.
+ */
+public class GeffLineage
+{
+
+	static final String LINEAGE_GROUP = "lineage";
+
+	private final int[] ids;
+
+	private final GeffIdIndex index;
+
+	private final int[] childrenOffsets;
+
+	private final int[] children;
+
+	private final int[] parentsOffsets;
+
+	private final int[] parents;
+
+	private GeffLineage( final int[] ids, final int[] childrenOffsets, final int[] children, final int[] parentsOffsets, final int[] parents )
+	{
+		this.ids = ids;
+		this.index = GeffIdIndex.of( ids );
+		this.childrenOffsets = childrenOffsets;
+		this.children = children;
+		this.parentsOffsets = parentsOffsets;
+		this.parents = parents;
+	}
+
+	/**
+	 * Loads the lineage arrays of the GEFF group in the specified Zarr file.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @return the lineage.
+	 * @throws IOException
+	 *             if the GEFF file has no lineage arrays.
+	 */
+	public static GeffLineage open( final String zarrPath ) throws IOException
+	{
+		try (final N5Reader reader = GeffStore.openReader( GeffIOUtils.geffPath( zarrPath ) ))
+		{
+			if ( !reader.exists( LINEAGE_GROUP ) )
+				throw new IOException( "The GEFF file " + zarrPath + " has no lineage arrays." );
+
+			return new GeffLineage(
+					GeffColumn.open( reader, "nodes/ids" ).readAllInts(),
+					readInts( reader, "children_offsets" ),
+					readInts( reader, "children" ),
+					readInts( reader, "parents_offsets" ),
+					readInts( reader, "parents" ) );
+		}
+	}
+
+	/**
+	 * Returns the number of nodes.
+	 */
+	public int size()
+	{
+		return ids.length;
+	}
+
+	/**
+	 * Returns the ids of the children of the specified node.
+	 */
+	public int[] children( final int id )
+	{
+		final int row = rowOf( id );
+		return toIds( children, childrenOffsets[ row ], childrenOffsets[ row + 1 ] );
+	}
+
+	/**
+	 * Returns the ids of the parents of the specified node.
+	 */
+	public int[] parents( final int id )
+	{
+		final int row = rowOf( id );
+		return toIds( parents, parentsOffsets[ row ], parentsOffsets[ row + 1 ] );
+	}
+
+	/**
+	 * Returns the ids of all the descendants of the specified node, in
+	 * breadth-first order. The node itself is not included.
+	 */
+	public int[] descendants( final int id )
+	{
+		return traverse( rowOf( id ), childrenOffsets, children );
+	}
+
+	/**
+	 * Returns the ids of all the ancestors of the specified node, in
+	 * breadth-first order. The node itself is not included.
+	 */
+	public int[] ancestors( final int id )
+	{
+		return traverse( rowOf( id ), parentsOffsets, parents );
+	}
+
+	/**
+	 * Returns the ids of the nodes that have more than one child.
+	 */
+	public int[] divisions()
+	{
+		return select( childrenOffsets, 2, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Returns the ids of the nodes that have no parent.
+	 */
+	public int[] roots()
+	{
+		return select( parentsOffsets, 0, 0 );
+	}
+
+	/**
+	 * Returns the ids of the nodes that have no child.
+	 */
+	public int[] leaves()
+	{
+		return select( childrenOffsets, 0, 0 );
+	}
+
+	private int rowOf( final int id )
+	{
+		final int row = index.rowOf( id );
+		if ( row < 0 )
+			throw new IllegalArgumentException( "Unknown node id: " + id );
+		return row;
+	}
+
+	private int[] toIds( final int[] rows, final int from, final int to )
+	{
+		final int[] out = new int[ to - from ];
+		for ( int i = from; i < to; i++ )
+			out[ i - from ] = ids[ rows[ i ] ];
+		return out;
+	}
+
+	private int[] traverse( final int start, final int[] offsets, final int[] neighbors )
+	{
+		final BitSet visited = new BitSet( ids.length );
+		visited.set( start );
+		int[] queue = new int[ 16 ];
+		int head = 0;
+		int tail = 0;
+		queue[ tail++ ] = start;
+		while ( head < tail )
+		{
+			final int row = queue[ head++ ];
+			for ( int i = offsets[ row ]; i < offsets[ row + 1 ]; i++ )
+			{
+				final int next = neighbors[ i ];
+				if ( visited.get( next ) )
+					continue;
+				visited.set( next );
+				if ( tail == queue.length )
+					queue = Arrays.copyOf( queue, 2 * tail );
+				queue[ tail++ ] = next;
+			}
+		}
+		// Skip the start node.
+		return toIds( queue, 1, tail );
+	}
+
+	private int[] select( final int[] offsets, final int minDegree, final int maxDegree )
+	{
+		int[] out = new int[ 16 ];
+		int n = 0;
+		for ( int row = 0; row < ids.length; row++ )
+		{
+			final int degree = offsets[ row + 1 ] - offsets[ row ];
+			if ( degree < minDegree || degree > maxDegree )
+				continue;
+			if ( n == out.length )
+				out = Arrays.copyOf( out, 2 * n );
+			out[ n++ ] = ids[ row ];
+		}
+		return Arrays.copyOf( out, n );
+	}
+
+	private static int[] readInts( final N5Reader reader, final String name )
+	{
+		return GeffColumn.open( reader, LINEAGE_GROUP + "/" + name ).readAllInts();
+	}
+
+	/**
+	 * Builds the lineage arrays of the node and edge columns of a GEFF group
+	 * and writes them in the same group. The columns are given in row order,
+	 * as they were just written.
+	 *
+	 * @param writer
+	 *            the writer.
+	 * @param group
+	 *            the path of the GEFF group relative to the writer, or an
+	 *            empty string if the writer is opened on the group.
+	 * @param chunkSize
+	 *            the chunk size of the lineage arrays.
+	 * @param ids
+	 *            the id of each node.
+	 * @param ts
+	 *            the frame of each node.
+	 * @param edgeIds
+	 *            the source and target ids of each edge, flattened
+	 *            row-major.
+	 */
+	static void write( final N5Writer writer, final String group, final int chunkSize, final int[] ids, final int[] ts, final int[] edgeIds )
+	{
+		final GeffIdIndex index = GeffIdIndex.of( ids );
+		final int n = ids.length;
+
+		// Resolve and orient edges.
+		final int nEdges = edgeIds.length / 2;
+		final int[] edgeParents = new int[ nEdges ];
+		final int[] edgeChildren = new int[ nEdges ];
+		int m = 0;
+		for ( int e = 0; e < nEdges; e++ )
+		{
+			final int source = index.rowOf( edgeIds[ 2 * e ] );
+			final int target = index.rowOf( edgeIds[ 2 * e + 1 ] );
+			if ( source < 0 || target < 0 )
+				continue;
+			final boolean forward = ts[ source ] <= ts[ target ];
+			edgeParents[ m ] = forward ? source : target;
+			edgeChildren[ m ] = forward ? target : source;
+			m++;
+		}
+
+		final int[] childrenOffsets = new int[ n + 1 ];
+		final int[] parentsOffsets = new int[ n + 1 ];
+		final int[] children = new int[ m ];
+		final int[] parents = new int[ m ];
+		toCSR( edgeParents, edgeChildren, m, childrenOffsets, children );
+		toCSR( edgeChildren, edgeParents, m, parentsOffsets, parents );
+
+		clear( writer, group );
+		final GeffColumnWriter columnWriter = new GeffColumnWriter( writer, group, chunkSize, false );
+		columnWriter.writeInts( LINEAGE_GROUP + "/children_offsets", childrenOffsets, 1 );
+		columnWriter.writeInts( LINEAGE_GROUP + "/children", children, 1 );
+		columnWriter.writeInts( LINEAGE_GROUP + "/parents_offsets", parentsOffsets, 1 );
+		columnWriter.writeInts( LINEAGE_GROUP + "/parents", parents, 1 );
+	}
+
+	/**
+	 * Counting sort of the edges by their 'from' end-point.
+	 */
+	private static void toCSR( final int[] from, final int[] to, final int m, final int[] offsets, final int[] neighbors )
+	{
+		for ( int e = 0; e < m; e++ )
+			offsets[ from[ e ] + 1 ]++;
+		for ( int i = 0; i < offsets.length - 1; i++ )
+			offsets[ i + 1 ] += offsets[ i ];
+		final int[] fill = Arrays.copyOf( offsets, offsets.length - 1 );
+		for ( int e = 0; e < m; e++ )
+			neighbors[ fill[ from[ e ] ]++ ] = to[ e ];
+	}
+
+	/**
+	 * Removes the lineage arrays of a GEFF group, if any. It must be called
+	 * when the node or edge columns are rewritten without new arrays.
+	 */
+	static void clear( final N5Writer writer )
+	{
+		clear( writer, "" );
+	}
+
+	/**
+	 * Removes the lineage index of the GEFF group at the specified path of
+	 * the writer.
+	 */
+	static void clear( final N5Writer writer, final String group )
+	{
+		final String path = GeffStore.resolve( group, LINEAGE_GROUP );
+		if ( writer.exists( path ) )
+			writer.remove( path );
+	}
+}
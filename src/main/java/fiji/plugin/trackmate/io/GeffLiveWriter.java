@@ -0,0 +1,538 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.mastodon.geff.GeffUtils;
+
+import fiji.plugin.trackmate.FeatureModel;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.ModelChangeEvent;
+import fiji.plugin.trackmate.ModelChangeListener;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackModel;
+
+/**
+ * Writes a GEFF file while a TrackMate model is being built, by appending the
+ * spots, their features and the new edges to the Zarr columns as the model
+ * changes.
+ * <p>
+ * The writer listens to the model and writes the visible spots, like the
+ * file export. Only the edits notified one by one
+ * ({@link ModelChangeEvent#MODEL_MODIFIED}), as made by manual or
+ * semi-automatic editing, are appended incrementally: their spots are buffered
+ * per frame, and a frame is written when spots of a later frame are added.
+ * TrackMate does not notify the spots of a detection frame by frame: a
+ * detection, a filtering step or a tracking step
+ * ({@link ModelChangeEvent#SPOTS_COMPUTED},
+ * {@link ModelChangeEvent#SPOTS_FILTERED},
+ * {@link ModelChangeEvent#TRACKS_COMPUTED}) is only seen once it is complete,
+ * and all its spots and edges are then written at once. The last frame
+ * written completely is stored in the {@value #LAST_FRAME_KEY} attribute of
+ * the GEFF group, so that consumers can read finished frames while the model
+ * is edited; after a detection it jumps directly to the last frame. Edges are
+ * appended as soon as both their end-points are written. Only the last chunk
+ * of each column is rewritten by an append, in the chunk layout of the
+ * existing array.
+ * <p>
+ * The track ids and the features computed after a spot or an edge is written
+ * are refreshed by {@link #close()}, which also removes the
+ * {@value #LAST_FRAME_KEY} attribute to mark the file as complete. Columns are
+ * append-only: if a spot or an edge already written is removed or modified,
+ * if a spot is added to a frame already written, or if the spots written are
+ * not the visible spots of the model at closing, the writer stops appending
+ * and {@link #close()} rewrites the file with
+ * {@link TrackMateGeffWriter#exportIncremental(Model, String, boolean)}
+ * instead.
+ */
+public class GeffLiveWriter implements ModelChangeListener, AutoCloseable
+{
+
+	/**
+	 * Key of the GEFF group attribute storing the last frame written
+	 * completely. It is absent once the writer is closed.
+	 */
+	public static final String LAST_FRAME_KEY = "trackmate_live_last_frame";
+
+	private final Model model;
+
+	private final String zarrPath;
+
+	private final String outputZarrPath;
+
+	private final boolean is2d;
+
+	private final N5ZarrWriter writer;
+
+	private final GeffColumnWriter columnWriter;
+
+	/** Spots written, in row order. */
+	private final List< Spot > spots = new ArrayList<>();
+
+	private final Set< Integer > spotIds = new HashSet<>();
+
+	/** Edges written, in row order. */
+	private final List< DefaultWeightedEdge > edges = new ArrayList<>();
+
+	private final Set< DefaultWeightedEdge > edgeSet = new HashSet<>();
+
+	private final TreeMap< Integer, List< Spot > > pendingSpots = new TreeMap<>();
+
+	private final Set< DefaultWeightedEdge > pendingEdges = new HashSet<>();
+
+	/** Feature columns created so far, with whether they store ints. */
+	private final Map< String, Boolean > spotFeatureColumns = new HashMap<>();
+
+	private final Map< String, Boolean > edgeFeatureColumns = new HashMap<>();
+
+	private int maxFrame = Integer.MIN_VALUE;
+
+	/** Last frame written completely, stored in {@value #LAST_FRAME_KEY}. */
+	private int publishedFrame = Integer.MIN_VALUE;
+
+	/** Whether an element already written was removed or modified. */
+	private boolean stale = false;
+
+	private RuntimeException error;
+
+	private boolean closed = false;
+
+	private GeffLiveWriter( final Model model, final String zarrPath, final boolean is2d ) throws IOException
+	{
+		this.model = model;
+		this.zarrPath = zarrPath;
+		this.outputZarrPath = GeffIOUtils.geffPath( zarrPath );
+		this.is2d = is2d;
+		TrackMateGeffWriter.writeMetadata( model, outputZarrPath, is2d );
+		this.writer = new N5ZarrWriter( outputZarrPath, true );
+		for ( final String group : new String[] { "nodes", "edges" } )
+			if ( writer.exists( group ) )
+				writer.remove( group );
+		GeffColumnWriter.clearChunkHashes( writer );
+		GeffSpatialIndex.clear( writer );
+		GeffLineage.clear( writer );
+		GeffChunkCache.getInstance().invalidate( GeffColumn.cacheKey( writer, "" ) );
+		this.columnWriter = new GeffColumnWriter( writer, GeffUtils.getChunkSize( outputZarrPath ), false );
+	}
+
+	/**
+	 * Starts writing a model to a GEFF file as it changes. The spots and edges
+	 * already in the model are written immediately. Any previous content of
+	 * the GEFF group is removed.
+	 *
+	 * @param model
+	 *            the model to write.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @return the writer, registered as a listener of the model. It must be
+	 *         closed at the end of the run.
+	 * @throws IOException
+	 */
+	public static GeffLiveWriter start( final Model model, final String zarrPath, final boolean is2d ) throws IOException
+	{
+		final GeffLiveWriter liveWriter = new GeffLiveWriter( model, zarrPath, is2d );
+		synchronized ( liveWriter )
+		{
+			try
+			{
+				liveWriter.addAll();
+			}
+			catch ( final RuntimeException e )
+			{
+				liveWriter.writer.close();
+				throw new IOException( "Could not write the GEFF file " + zarrPath, e );
+			}
+		}
+		model.addModelChangeListener( liveWriter );
+		return liveWriter;
+	}
+
+	@Override
+	public synchronized void modelChanged( final ModelChangeEvent event )
+	{
+		// Once stale, the file is rewritten at closing.
+		if ( closed || error != null || stale )
+			return;
+
+		try
+		{
+			switch ( event.getEventID() )
+			{
+			case ModelChangeEvent.SPOTS_COMPUTED:
+			case ModelChangeEvent.SPOTS_FILTERED:
+			case ModelChangeEvent.TRACKS_COMPUTED:
+				addAll();
+				break;
+
+			case ModelChangeEvent.MODEL_MODIFIED:
+				if ( event.getSpots() != null )
+					for ( final Spot spot : event.getSpots() )
+						spotChanged( spot, event.getSpotFlag( spot ) );
+				if ( event.getEdges() != null )
+					for ( final DefaultWeightedEdge edge : event.getEdges() )
+						edgeChanged( edge, event.getEdgeFlag( edge ) );
+				// Frames before the last one seen are complete.
+				flushSpots( maxFrame - 1 );
+				flushEdges();
+				break;
+
+			default:
+				break;
+			}
+		}
+		catch ( final RuntimeException e )
+		{
+			// Do not break the model update, report at closing.
+			error = e;
+		}
+	}
+
+	/**
+	 * Stops listening to the model, writes the pending spots and edges, and
+	 * refreshes the track ids, the features and the metadata.
+	 *
+	 * @throws IOException
+	 *             if an append failed while the model was changing, or if
+	 *             the final write fails.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if ( closed )
+			return;
+		closed = true;
+		model.removeModelChangeListener( this );
+		try
+		{
+			rethrow();
+			if ( !stale )
+			{
+				flushSpots( Integer.MAX_VALUE );
+				flushEdges();
+				stale = !writtenSpotsAreVisible();
+			}
+			if ( !stale )
+				refresh();
+		}
+		catch ( final RuntimeException e )
+		{
+			throw new IOException( "Could not write the GEFF file " + zarrPath, e );
+		}
+		finally
+		{
+			writer.close();
+		}
+		if ( stale )
+			rewrite();
+	}
+
+	/**
+	 * Rewrites the track ids, the features and the metadata of the spots and
+	 * edges written, and marks the file as complete.
+	 */
+	private void refresh() throws IOException
+	{
+		final FeatureModel featureModel = model.getFeatureModel();
+		final TrackModel trackModel = model.getTrackModel();
+		final int[] segmentIds = new int[ spots.size() ];
+		for ( int i = 0; i < segmentIds.length; i++ )
+		{
+			final Integer trackID = trackModel.trackIDOf( spots.get( i ) );
+			segmentIds[ i ] = trackID == null ? -1 : trackID;
+		}
+		columnWriter.writeInts( GeffColumn.nodeProp( "segment_id" ), segmentIds, 1 );
+		TrackMateGeffWriter.writeSpotFeatures( spots, featureModel, columnWriter, GeffFeatureSelection.all(), GeffEncoding.none() );
+		TrackMateGeffWriter.writeEdgeFeatures( edges, featureModel, columnWriter, GeffFeatureSelection.all(), GeffEncoding.none() );
+		writer.removeAttribute( "/", LAST_FRAME_KEY );
+		TrackMateGeffWriter.writeMetadata( model, outputZarrPath, is2d );
+	}
+
+	/**
+	 * Rewrites the whole file from the model, once the appending writer is
+	 * closed, and marks it as complete.
+	 */
+	private void rewrite() throws IOException
+	{
+		try
+		{
+			TrackMateGeffWriter.exportIncremental( model, zarrPath, is2d );
+			try (final N5ZarrWriter rewritten = new N5ZarrWriter( outputZarrPath, true ))
+			{
+				rewritten.removeAttribute( "/", LAST_FRAME_KEY );
+			}
+		}
+		catch ( final RuntimeException e )
+		{
+			throw new IOException( "Could not write the GEFF file " + zarrPath, e );
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the spots written are exactly the visible
+	 * spots of the model, that the file export writes.
+	 */
+	private boolean writtenSpotsAreVisible()
+	{
+		int nVisible = 0;
+		for ( final Spot spot : model.getSpots().iterable( true ) )
+		{
+			if ( !spotIds.contains( spot.ID() ) )
+				return false;
+			nVisible++;
+		}
+		return nVisible == spotIds.size();
+	}
+
+	/**
+	 * Queues the visible spots and the edges of the model that are not
+	 * written yet, and writes them all.
+	 */
+	private void addAll()
+	{
+		for ( final Spot spot : model.getSpots().iterable( true ) )
+			spotChanged( spot, ModelChangeEvent.FLAG_SPOT_ADDED );
+		for ( final DefaultWeightedEdge edge : model.getTrackModel().edgeSet() )
+			edgeChanged( edge, ModelChangeEvent.FLAG_EDGE_ADDED );
+		flushSpots( Integer.MAX_VALUE );
+		flushEdges();
+	}
+
+	private void spotChanged( final Spot spot, final Integer flag )
+	{
+		if ( flag == null )
+			return;
+
+		final boolean written = spotIds.contains( spot.ID() );
+		if ( flag == ModelChangeEvent.FLAG_SPOT_ADDED )
+		{
+			if ( written )
+				return;
+			final int frame = spot.getFeature( Spot.FRAME ).intValue();
+			if ( frame <= publishedFrame )
+			{
+				// Consumers may have read this frame already.
+				stale = true;
+				return;
+			}
+			pendingSpots.computeIfAbsent( frame, k -> new ArrayList<>() ).add( spot );
+			maxFrame = Math.max( maxFrame, frame );
+		}
+		else if ( written )
+		{
+			stale = true;
+		}
+		else if ( flag == ModelChangeEvent.FLAG_SPOT_REMOVED )
+		{
+			for ( final List< Spot > list : pendingSpots.values() )
+				list.remove( spot );
+		}
+	}
+
+	private void edgeChanged( final DefaultWeightedEdge edge, final Integer flag )
+	{
+		if ( flag == null )
+			return;
+
+		final boolean written = edgeSet.contains( edge );
+		if ( flag == ModelChangeEvent.FLAG_EDGE_ADDED )
+		{
+			if ( !written )
+				pendingEdges.add( edge );
+		}
+		else if ( written )
+		{
+			stale = true;
+		}
+		else if ( flag == ModelChangeEvent.FLAG_EDGE_REMOVED )
+		{
+			pendingEdges.remove( edge );
+		}
+	}
+
+	/**
+	 * Appends the pending spots up to the specified frame, inclusive.
+	 */
+	private void flushSpots( final int lastFrame )
+	{
+		final List< Spot > batch = new ArrayList<>();
+		final Iterator< Map.Entry< Integer, List< Spot > > > it = pendingSpots.headMap( lastFrame, true ).entrySet().iterator();
+		while ( it.hasNext() )
+		{
+			batch.addAll( it.next().getValue() );
+			it.remove();
+		}
+		if ( batch.isEmpty() )
+			return;
+
+		final int n = batch.size();
+		final int[] ids = new int[ n ];
+		final int[] ts = new int[ n ];
+		final int[] segmentIds = new int[ n ];
+		final double[] xs = new double[ n ];
+		final double[] ys = new double[ n ];
+		final double[] zs = new double[ n ];
+		final double[] radii = new double[ n ];
+		final double[] colors = new double[ 4 * n ];
+		final double[] color = new double[ 4 ];
+		final TrackModel trackModel = model.getTrackModel();
+		for ( int i = 0; i < n; i++ )
+		{
+			final Spot spot = batch.get( i );
+			ids[ i ] = spot.ID();
+			ts[ i ] = spot.getFeature( Spot.FRAME ).intValue();
+			final Integer trackID = trackModel.trackIDOf( spot );
+			segmentIds[ i ] = trackID == null ? -1 : trackID;
+			xs[ i ] = spot.getDoublePosition( 0 );
+			ys[ i ] = spot.getDoublePosition( 1 );
+			zs[ i ] = spot.getDoublePosition( 2 );
+			radii[ i ] = spot.getFeature( Spot.RADIUS ).doubleValue();
+			TrackMateGeffWriter.getColorFromSpot( spot, color );
+			System.arraycopy( color, 0, colors, 4 * i, 4 );
+		}
+
+		// Feature columns first, the ids column tells how many rows are done.
+		appendFeatures( batch, spots.size(), true );
+		columnWriter.appendInts( GeffColumn.nodeProp( "t" ), ts, 1 );
+		columnWriter.appendDoubles( GeffColumn.nodeProp( "x" ), xs, 1 );
+		columnWriter.appendDoubles( GeffColumn.nodeProp( "y" ), ys, 1 );
+		if ( !is2d )
+			columnWriter.appendDoubles( GeffColumn.nodeProp( "z" ), zs, 1 );
+		columnWriter.appendDoubles( GeffColumn.nodeProp( "radius" ), radii, 1 );
+		columnWriter.appendDoubles( GeffColumn.nodeProp( "color" ), colors, 4 );
+		columnWriter.appendInts( GeffColumn.nodeProp( "segment_id" ), segmentIds, 1 );
+		columnWriter.appendInts( "nodes/ids", ids, 1 );
+
+		for ( final Spot spot : batch )
+		{
+			spots.add( spot );
+			spotIds.add( spot.ID() );
+		}
+		publishedFrame = pendingSpots.isEmpty() ? maxFrame : Math.min( maxFrame, pendingSpots.firstKey() - 1 );
+		writer.setAttribute( "/", LAST_FRAME_KEY, publishedFrame );
+	}
+
+	/**
+	 * Appends the pending edges whose end-points are both written.
+	 */
+	private void flushEdges()
+	{
+		final TrackModel trackModel = model.getTrackModel();
+		final List< DefaultWeightedEdge > batch = new ArrayList<>();
+		final Iterator< DefaultWeightedEdge > it = pendingEdges.iterator();
+		while ( it.hasNext() )
+		{
+			final DefaultWeightedEdge edge = it.next();
+			if ( spotIds.contains( trackModel.getEdgeSource( edge ).ID() ) && spotIds.contains( trackModel.getEdgeTarget( edge ).ID() ) )
+			{
+				batch.add( edge );
+				it.remove();
+			}
+		}
+		if ( batch.isEmpty() )
+			return;
+
+		final int n = batch.size();
+		final int[] ids = new int[ 2 * n ];
+		final double[] distances = new double[ n ];
+		final double[] scores = new double[ n ];
+		for ( int i = 0; i < n; i++ )
+		{
+			final DefaultWeightedEdge edge = batch.get( i );
+			ids[ 2 * i ] = trackModel.getEdgeSource( edge ).ID();
+			ids[ 2 * i + 1 ] = trackModel.getEdgeTarget( edge ).ID();
+			distances[ i ] = Math.sqrt( trackModel.getEdgeWeight( edge ) );
+			scores[ i ] = -1.;
+		}
+
+		appendFeatures( batch, edges.size(), false );
+		columnWriter.appendDoubles( GeffColumn.edgeProp( "distance" ), distances, 1 );
+		columnWriter.appendDoubles( GeffColumn.edgeProp( "score" ), scores, 1 );
+		columnWriter.appendInts( "edges/ids", ids, 2 );
+
+		edges.addAll( batch );
+		edgeSet.addAll( batch );
+	}
+
+	/**
+	 * Appends the feature values of a batch of spots or edges. A feature
+	 * column created after some rows were written is back-filled with missing
+	 * values.
+	 */
+	private void appendFeatures( final List< ? > batch, final int rowsBefore, final boolean isSpot )
+	{
+		final FeatureModel featureModel = model.getFeatureModel();
+		final Map< String, Boolean > isIntMap = isSpot ? featureModel.getSpotFeatureIsInt() : featureModel.getEdgeFeatureIsInt();
+		final Map< String, Boolean > columns = isSpot ? spotFeatureColumns : edgeFeatureColumns;
+		final Set< String > features = new HashSet<>( isSpot ? featureModel.getSpotFeatures() : featureModel.getEdgeFeatures() );
+		features.addAll( columns.keySet() );
+
+		final int n = batch.size();
+		for ( final String key : features )
+		{
+			final Boolean isIntObj = columns.containsKey( key ) ? columns.get( key ) : isIntMap.get( key );
+			final boolean isInt = isIntObj != null && isIntObj;
+			final int offset = columns.containsKey( key ) ? 0 : rowsBefore;
+			final String path = isSpot ? GeffColumn.nodeProp( key ) : GeffColumn.edgeProp( key );
+			final double[] values = new double[ offset + n ];
+			for ( int i = 0; i < offset; i++ )
+				values[ i ] = Double.NaN;
+			for ( int i = 0; i < n; i++ )
+			{
+				final Object o = batch.get( i );
+				final Double val = isSpot ? ( ( Spot ) o ).getFeature( key ) : featureModel.getEdgeFeature( ( DefaultWeightedEdge ) o, key );
+				values[ offset + i ] = val == null ? Double.NaN : val.doubleValue();
+			}
+
+			if ( isInt )
+			{
+				final int[] ints = new int[ values.length ];
+				for ( int i = 0; i < ints.length; i++ )
+					ints[ i ] = Double.isNaN( values[ i ] ) ? Integer.MIN_VALUE : ( int ) values[ i ];
+				columnWriter.appendInts( path, ints, 1 );
+			}
+			else
+			{
+				columnWriter.appendDoubles( path, values, 1 );
+			}
+			columns.put( key, isInt );
+		}
+	}
+
+	private void rethrow() throws IOException
+	{
+		if ( error != null )
+			throw new IOException( "Could not append to the GEFF file " + zarrPath, error );
+	}
+}
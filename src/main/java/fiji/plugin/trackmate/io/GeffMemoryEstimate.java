@@ -0,0 +1,416 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Locale;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
+
+import fiji.plugin.trackmate.FeatureModel;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * Preflight estimate of the peak heap used by a GEFF import or export, before
+ * any heavy allocation.
+ * <p>
+ * The estimate is computed from the array shapes of the GEFF file, or from the
+ * sizes of the model on export, with per-element costs of a 64-bit JVM with
+ * compressed pointers. It compares two strategies:
+ * <ul>
+ * <li>{@link Strategy#OBJECTS}: the GEFF library path, that goes through one
+ * {@link org.mastodon.geff.GeffNode} and {@link org.mastodon.geff.GeffEdge}
+ * object per element.
+ * <li>{@link Strategy#COLUMNS}: the lower-memory path, that reads and writes
+ * the columns directly from primitive arrays. It is not available when spots
+ * have polygons, which are serialized by the GEFF library.
+ * </ul>
+ * {@link #select()} returns the object path if it fits in the available heap,
+ * the column path otherwise, and fails fast if neither fits.
+ */
+public class GeffMemoryEstimate
+{
+
+	/**
+	 * The import or export path.
+	 */
+	public enum Strategy
+	{
+		OBJECTS, COLUMNS;
+	}
+
+	/** Spot with its name, feature map and the 5 core features. */
+	private static final long SPOT_BYTES = 480;
+
+	/** Vertex of the track graph, and its entries in the track sets. */
+	private static final long VERTEX_BYTES = 160;
+
+	/** Edge of the track graph, its edge containers and track set entries. */
+	private static final long EDGE_BYTES = 250;
+
+	/** One feature value in a spot feature map or in the edge feature map. */
+	private static final long FEATURE_BYTES = 64;
+
+	/** GeffNode object and its share of the arrays read by the library. */
+	private static final long GEFF_NODE_BYTES = 240;
+
+	/** GeffEdge object and its share of the arrays read by the library. */
+	private static final long GEFF_EDGE_BYTES = 70;
+
+	/** Id to spot map and row arrays of the object path. */
+	private static final long OBJECT_INDEX_BYTES = 56;
+
+	/** Row arrays and id index of the column path. */
+	private static final long COLUMN_INDEX_BYTES = 16;
+
+	/** Core node columns as primitive arrays, on export. */
+	private static final long NODE_COLUMNS_BYTES = 84;
+
+	/** Core edge columns as primitive arrays, on export. */
+	private static final long EDGE_COLUMNS_BYTES = 40;
+
+	/** Fraction of the available heap that an operation may use. */
+	private static final double HEADROOM = 0.8;
+
+	private final String operation;
+
+	private final long nNodes;
+
+	private final long nEdges;
+
+	private final int nNodeFeatures;
+
+	private final int nEdgeFeatures;
+
+	private final long objectBytes;
+
+	private final long columnBytes;
+
+	private final boolean columnsAvailable;
+
+	private final long availableBytes;
+
+	private GeffMemoryEstimate( final String operation, final long nNodes, final long nEdges, final int nNodeFeatures, final int nEdgeFeatures, final long objectBytes, final long columnBytes, final boolean columnsAvailable )
+	{
+		this.operation = operation;
+		this.nNodes = nNodes;
+		this.nEdges = nEdges;
+		this.nNodeFeatures = nNodeFeatures;
+		this.nEdgeFeatures = nEdgeFeatures;
+		this.objectBytes = objectBytes;
+		this.columnBytes = columnBytes;
+		this.columnsAvailable = columnsAvailable;
+		this.availableBytes = availableHeap();
+	}
+
+	/**
+	 * Estimates the peak heap used to read a GEFF file into a model. Only the
+	 * array shapes and attributes are read.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param selection
+	 *            the features to read.
+	 * @return the estimate.
+	 * @throws IOException
+	 *             if the GEFF file has no node columns.
+	 */
+	public static GeffMemoryEstimate forImport( final String zarrPath, final GeffFeatureSelection selection ) throws IOException
+	{
+		try (final N5ZarrReader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath ) ))
+		{
+			return forImport( reader, zarrPath, selection );
+		}
+	}
+
+	static GeffMemoryEstimate forImport( final N5Reader reader, final String zarrPath, final GeffFeatureSelection selection ) throws IOException
+	{
+		final GeffColumn ids = GeffColumn.open( reader, "nodes/ids" );
+		if ( ids == null )
+			throw new IOException( "The GEFF file " + zarrPath + " has no node columns." );
+		final GeffColumn edgeIds = GeffColumn.open( reader, "edges/ids" );
+
+		final long n = ids.size();
+		final long e = edgeIds == null ? 0 : edgeIds.size();
+		final int nf = TrackMateGeffReader.openFeatureColumns( reader, "nodes/props", GeffColumn.GEFF_NODE_PROPS, selection::isSpotFeatureSelected, n ).size();
+		final int ef = TrackMateGeffReader.openFeatureColumns( reader, "edges/props", GeffColumn.GEFF_EDGE_PROPS, selection::isEdgeFeatureSelected, e ).size();
+
+		// Polygons: vertices are stored once in the library arrays and once in
+		// the spot ROIs.
+		long polygonBytes = 0;
+		boolean hasPolygons = false;
+		if ( reader.exists( "nodes/props" ) )
+		{
+			for ( final String name : reader.list( "nodes/props" ) )
+			{
+				if ( !name.startsWith( "polygon" ) )
+					continue;
+				hasPolygons = true;
+				for ( final String array : reader.list( "nodes/props/" + name ) )
+				{
+					final GeffColumn column = GeffColumn.open( reader, "nodes/props/" + name + "/" + array );
+					if ( column != null )
+						polygonBytes += 2 * 8 * column.size() * column.width();
+				}
+			}
+		}
+
+		final long model = n * ( SPOT_BYTES + VERTEX_BYTES + nf * FEATURE_BYTES )
+				+ e * ( EDGE_BYTES + ef * FEATURE_BYTES );
+		final long objects = model + n * ( GEFF_NODE_BYTES + OBJECT_INDEX_BYTES ) + e * GEFF_EDGE_BYTES + polygonBytes;
+		final long columns = model + n * COLUMN_INDEX_BYTES + e * 4;
+		return new GeffMemoryEstimate( "Reading " + zarrPath, n, e, nf, ef, objects, columns, !hasPolygons );
+	}
+
+	/**
+	 * Estimates the peak heap used to export a model to a GEFF file, on top of
+	 * the model itself.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param selection
+	 *            the features to write.
+	 * @return the estimate.
+	 */
+	public static GeffMemoryEstimate forExport( final Model model, final GeffFeatureSelection selection )
+	{
+		long n = 0;
+		long polygonBytes = 0;
+		for ( final Spot spot : model.getSpots().iterable( true ) )
+		{
+			n++;
+			if ( spot.getRoi() != null )
+				polygonBytes += 2 * 8 * spot.getRoi().x.length;
+		}
+		final long e = model.getTrackModel().edgeSet().size();
+		final FeatureModel featureModel = model.getFeatureModel();
+		final int nf = ( int ) featureModel.getSpotFeatures().stream().filter( selection::isSpotFeatureSelected ).count();
+		final int ef = ( int ) featureModel.getEdgeFeatures().stream().filter( selection::isEdgeFeatureSelected ).count();
+
+		// Feature columns are written one at a time. Edges are always written
+		// from primitive columns.
+		final long featureColumn = 8 * Math.max( n, e );
+		final long objects = n * ( GEFF_NODE_BYTES + 8 ) + e * EDGE_COLUMNS_BYTES + polygonBytes + featureColumn;
+		final long columns = n * ( NODE_COLUMNS_BYTES + 8 ) + e * EDGE_COLUMNS_BYTES + featureColumn;
+		return new GeffMemoryEstimate( "Exporting to GEFF", n, e, nf, ef, objects, columns, polygonBytes == 0 );
+	}
+
+	/**
+	 * Selects the strategy to use: the object path if it fits in the
+	 * available heap, otherwise the column path if it is available and fits.
+	 *
+	 * @return the strategy.
+	 * @throws IOException
+	 *             if no strategy fits in the available heap, with a message
+	 *             stating the estimated and available sizes.
+	 */
+	public Strategy select() throws IOException
+	{
+		return select( availableBytes );
+	}
+
+	private Strategy select( final long availableBytes ) throws IOException
+	{
+		if ( fits( objectBytes, availableBytes ) )
+			return Strategy.OBJECTS;
+		if ( columnsAvailable && fits( columnBytes, availableBytes ) )
+			return Strategy.COLUMNS;
+
+		final long needed = columnsAvailable ? columnBytes : objectBytes;
+		throw new IOException( String.format( Locale.US,
+				"%s needs an estimated %s of heap for %d nodes, %d edges, %d node features and %d edge features, "
+						+ "but only %s are available. Select fewer features, use TrackMateGeffReader.openTable() for "
+						+ "statistics, or increase the maximum heap size (-Xmx).",
+				operation, toMB( needed ), nNodes, nEdges, nNodeFeatures, nEdgeFeatures, toMB( availableBytes ) ) );
+	}
+
+	/**
+	 * Fails fast if the column path does not fit in the available heap. Used
+	 * by the operations that only have a column path.
+	 *
+	 * @throws IOException
+	 *             if the column path does not fit.
+	 */
+	public void checkColumns() throws IOException
+	{
+		checkColumns( availableBytes );
+	}
+
+	private void checkColumns( final long availableBytes ) throws IOException
+	{
+		if ( fits( columnBytes, availableBytes ) )
+			return;
+		throw new IOException( String.format( Locale.US,
+				"%s needs an estimated %s of heap for %d nodes and %d edges, but only %s are available. "
+						+ "Increase the maximum heap size (-Xmx).",
+				operation, toMB( columnBytes ), nNodes, nEdges, toMB( availableBytes ) ) );
+	}
+
+	public long getNodeCount()
+	{
+		return nNodes;
+	}
+
+	public long getEdgeCount()
+	{
+		return nEdges;
+	}
+
+	/**
+	 * Returns the estimated peak heap of the object path, in bytes.
+	 */
+	public long getObjectBytes()
+	{
+		return objectBytes;
+	}
+
+	/**
+	 * Returns the estimated peak heap of the column path, in bytes.
+	 */
+	public long getColumnBytes()
+	{
+		return columnBytes;
+	}
+
+	/**
+	 * Returns whether the column path can be used. It cannot when spots have
+	 * polygons.
+	 */
+	public boolean isColumnPathAvailable()
+	{
+		return columnsAvailable;
+	}
+
+	/**
+	 * Returns the estimated peak heap of the specified strategy, in bytes.
+	 */
+	public long getBytes( final Strategy strategy )
+	{
+		return strategy == Strategy.OBJECTS ? objectBytes : columnBytes;
+	}
+
+	/**
+	 * Returns the heap available when the estimate was made, in bytes.
+	 */
+	public long getAvailableBytes()
+	{
+		return availableBytes;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format( Locale.US, "%s: %d nodes, %d edges, objects %s, columns %s%s, available %s",
+				operation, nNodes, nEdges, toMB( objectBytes ), toMB( columnBytes ),
+				columnsAvailable ? "" : " (unavailable)", toMB( availableBytes ) );
+	}
+
+	/**
+	 * Selects the strategies of several operations that run concurrently, at
+	 * most <code>numThreads</code> at a time, against a single measure of the
+	 * available heap. An operation gets the object path if it fits in its
+	 * share of the heap, and the column path otherwise. The caller must bound
+	 * the operations running at the same time so that the sum of their
+	 * estimates stays below {@link #usableHeap()}.
+	 *
+	 * @param estimates
+	 *            the estimates of the operations.
+	 * @param numThreads
+	 *            the maximal number of operations running at the same time.
+	 * @param preferColumns
+	 *            whether to use the column path whenever it is available.
+	 * @return the strategy of each operation.
+	 * @throws IOException
+	 *             if an operation does not fit in the whole available heap.
+	 */
+	static Strategy[] selectAll( final List< GeffMemoryEstimate > estimates, final int numThreads, final boolean preferColumns ) throws IOException
+	{
+		final long available = availableHeap();
+		final long share = available / Math.max( 1, Math.min( numThreads, estimates.size() ) );
+		final Strategy[] strategies = new Strategy[ estimates.size() ];
+		for ( int i = 0; i < strategies.length; i++ )
+		{
+			final GeffMemoryEstimate estimate = estimates.get( i );
+			if ( preferColumns && estimate.columnsAvailable )
+			{
+				estimate.checkColumns( available );
+				strategies[ i ] = Strategy.COLUMNS;
+			}
+			else if ( fits( estimate.objectBytes, share ) )
+			{
+				strategies[ i ] = Strategy.OBJECTS;
+			}
+			else if ( estimate.columnsAvailable && fits( estimate.columnBytes, share ) )
+			{
+				strategies[ i ] = Strategy.COLUMNS;
+			}
+			else
+			{
+				strategies[ i ] = estimate.select( available );
+			}
+		}
+		return strategies;
+	}
+
+	/**
+	 * Returns the heap that operations may use at the same time, in bytes.
+	 */
+	static long usableHeap()
+	{
+		return ( long ) ( HEADROOM * availableHeap() );
+	}
+
+	private static boolean fits( final long bytes, final long availableBytes )
+	{
+		return bytes <= HEADROOM * availableBytes;
+	}
+
+	/**
+	 * Returns the heap that can still be allocated: the maximal heap size
+	 * minus the heap retained after the last garbage collection of each heap
+	 * pool. The heap in use would also count the garbage not collected yet.
+	 */
+	static long availableHeap()
+	{
+		long retained = 0;
+		for ( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+		{
+			if ( pool.getType() != MemoryType.HEAP || !pool.isValid() )
+				continue;
+			final MemoryUsage afterGC = pool.getCollectionUsage();
+			retained += afterGC == null ? pool.getUsage().getUsed() : afterGC.getUsed();
+		}
+		return Runtime.getRuntime().maxMemory() - retained;
+	}
+
+	private static String toMB( final long bytes )
+	{
+		return String.format( Locale.US, "%.0f MB", bytes / ( 1024. * 1024. ) );
+	}
+}
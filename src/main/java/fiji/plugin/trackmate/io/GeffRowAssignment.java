@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.util.Arrays;
+
+/**
+ * Assigns the rows of a column to elements so that elements already written
+ * by a previous export keep their row.
+ * <p>
+ * Elements are identified by a primitive key: the spot ID for nodes, the
+ * packed source and target IDs for edges. Elements that are still present
+ * keep their previous row. The rows freed by removed elements are filled
+ * first with the new elements, in their given order, then with the elements
+ * of the rows beyond the new column size, so that the column stays dense.
+ * Remaining new elements are appended. An edit thus only changes the chunks
+ * of the rows it touches, plus the tail of the column.
+ */
+final class GeffRowAssignment
+{
+
+	private GeffRowAssignment()
+	{}
+
+	/**
+	 * Computes the row assignment.
+	 *
+	 * @param previousKeys
+	 *            the keys of the elements of the previous export, in row
+	 *            order.
+	 * @param keys
+	 *            the keys of the elements to write, in their default order.
+	 *            Keys must be unique.
+	 * @return the index in <code>keys</code> of the element to write at each
+	 *         row.
+	 */
+	static int[] assign( final long[] previousKeys, final long[] keys )
+	{
+		final int n = keys.length;
+
+		// Current keys sorted, with their index.
+		final long[] sorted = keys.clone();
+		final int[] sortedIndex = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			sortedIndex[ i ] = i;
+		sort( sorted, sortedIndex, n );
+
+		final int[] order = new int[ n ];
+		Arrays.fill( order, -1 );
+		final boolean[] placed = new boolean[ n ];
+		final int[] tail = new int[ n ];
+		int nTail = 0;
+		for ( int row = 0; row < previousKeys.length; row++ )
+		{
+			final int pos = Arrays.binarySearch( sorted, previousKeys[ row ] );
+			if ( pos < 0 )
+				continue;
+			final int i = sortedIndex[ pos ];
+			if ( placed[ i ] )
+				continue;
+			placed[ i ] = true;
+			if ( row < n )
+				order[ row ] = i;
+			else
+				tail[ nTail++ ] = i;
+		}
+
+		// Fill the holes with the new elements, then with the tail.
+		int next = 0;
+		int nextTail = 0;
+		for ( int row = 0; row < n; row++ )
+		{
+			if ( order[ row ] >= 0 )
+				continue;
+			while ( next < n && placed[ next ] )
+				next++;
+			if ( next < n )
+			{
+				order[ row ] = next;
+				placed[ next ] = true;
+			}
+			else
+			{
+				order[ row ] = tail[ nextTail++ ];
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Returns the packed key of an edge.
+	 */
+	static long edgeKey( final int sourceId, final int targetId )
+	{
+		return ( ( long ) sourceId << 32 ) | ( targetId & 0xffffffffL );
+	}
+
+	/**
+	 * In-place heap sort of the first <code>n</code> keys, applying the same
+	 * permutation to the indices. The sort is not stable: keys are expected to
+	 * be unique.
+	 */
+	static void sort( final long[] keys, final int[] indices, final int n )
+	{
+		for ( int i = n / 2 - 1; i >= 0; i-- )
+			siftDown( keys, indices, i, n );
+		for ( int end = n - 1; end > 0; end-- )
+		{
+			swap( keys, indices, 0, end );
+			siftDown( keys, indices, 0, end );
+		}
+	}
+
+	private static void siftDown( final long[] keys, final int[] indices, int i, final int n )
+	{
+		while ( true )
+		{
+			int largest = i;
+			final int left = 2 * i + 1;
+			final int right = left + 1;
+			if ( left < n && keys[ left ] > keys[ largest ] )
+				largest = left;
+			if ( right < n && keys[ right ] > keys[ largest ] )
+				largest = right;
+			if ( largest == i )
+				return;
+			swap( keys, indices, i, largest );
+			i = largest;
+		}
+	}
+
+	private static void swap( final long[] keys, final int[] indices, final int i, final int j )
+	{
+		final long k = keys[ i ];
+		keys[ i ] = keys[ j ];
+		keys[ j ] = k;
+		final int v = indices[ i ];
+		indices[ i ] = indices[ j ];
+		indices[ j ] = v;
+	}
+}
@@ -0,0 +1,436 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+
+/**
+ * A per-frame spatial index stored next to the node columns of a GEFF group.
+ * <p>
+ * The index is a uniform grid, common to all frames. Node rows are sorted by
+ * frame then by grid cell, and only the non-empty cells are stored. It is made
+ * of 4 arrays in the <code>spatial_index</code> group:
+ * <ul>
+ * <li><code>frame_starts</code>: for each frame, the index of its first cell
+ * in <code>cell_keys</code>.
+ * <li><code>cell_keys</code>: the linear index of each non-empty cell in the
+ * grid.
+ * <li><code>cell_starts</code>: for each non-empty cell, the index of its first
+ * node in <code>rows</code>.
+ * <li><code>rows</code>: the node rows, sorted by frame then cell.
+ * </ul>
+ * The grid geometry is stored in the attributes of the
+ * <code>spatial_index</code> group.
+ * <p>
+ * Queries only read the index chunks and the node chunks of the cells that
+ * intersect the query ball. Instances keep the last chunk read of each array,
+ * and are not thread-safe.
+ */
+public class GeffSpatialIndex implements AutoCloseable
+{
+
+	static final String INDEX_GROUP = "spatial_index";
+
+	private final N5Reader reader;
+
+	private final double[] origin;
+
+	private final double cellSize;
+
+	private final int[] gridSize;
+
+	private final int minFrame;
+
+	private final int nFrames;
+
+	private final GeffColumn frameStarts;
+
+	private final GeffColumn cellKeys;
+
+	private final GeffColumn cellStarts;
+
+	private final GeffColumn rows;
+
+	private final GeffColumn ids;
+
+	private final GeffColumn xs;
+
+	private final GeffColumn ys;
+
+	private final GeffColumn zs;
+
+	private GeffSpatialIndex( final N5Reader reader )
+	{
+		this.reader = reader;
+		this.origin = reader.getAttribute( INDEX_GROUP, "origin", double[].class );
+		this.cellSize = reader.getAttribute( INDEX_GROUP, "cell_size", Double.class );
+		this.gridSize = reader.getAttribute( INDEX_GROUP, "grid_size", int[].class );
+		this.minFrame = reader.getAttribute( INDEX_GROUP, "min_frame", Integer.class );
+		this.nFrames = reader.getAttribute( INDEX_GROUP, "n_frames", Integer.class );
+		this.frameStarts = GeffColumn.open( reader, INDEX_GROUP + "/frame_starts" );
+		this.cellKeys = GeffColumn.open( reader, INDEX_GROUP + "/cell_keys" );
+		this.cellStarts = GeffColumn.open( reader, INDEX_GROUP + "/cell_starts" );
+		this.rows = GeffColumn.open( reader, INDEX_GROUP + "/rows" );
+		this.ids = GeffColumn.open( reader, "nodes/ids" );
+		this.xs = GeffColumn.open( reader, GeffColumn.nodeProp( "x" ) );
+		this.ys = GeffColumn.open( reader, GeffColumn.nodeProp( "y" ) );
+		this.zs = GeffColumn.open( reader, GeffColumn.nodeProp( "z" ) );
+	}
+
+	/**
+	 * Opens the spatial index of the GEFF group in the specified Zarr file.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @return the spatial index, to be closed after use.
+	 * @throws IOException
+	 *             if the GEFF group has no spatial index.
+	 */
+	public static GeffSpatialIndex open( final String zarrPath ) throws IOException
+	{
+		final N5Reader reader = GeffStore.openReader( GeffIOUtils.geffPath( zarrPath ) );
+		if ( !reader.exists( INDEX_GROUP ) )
+		{
+			reader.close();
+			throw new IOException( "The GEFF file " + zarrPath + " has no spatial index." );
+		}
+		return new GeffSpatialIndex( reader );
+	}
+
+	/**
+	 * Returns the ids of the nodes of the specified frame that are within the
+	 * specified distance of a point.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @param x
+	 *            the X coordinate of the point.
+	 * @param y
+	 *            the Y coordinate of the point.
+	 * @param z
+	 *            the Z coordinate of the point. Ignored in 2D.
+	 * @param r
+	 *            the search radius.
+	 * @return the ids of the nodes found, in no particular order.
+	 */
+	public int[] query( final int frame, final double x, final double y, final double z, final double r )
+	{
+		final int f = frame - minFrame;
+		if ( f < 0 || f >= nFrames )
+			return new int[ 0 ];
+
+		final int c0 = frameStarts.getInt( f );
+		final int c1 = frameStarts.getInt( f + 1 );
+		if ( c0 == c1 )
+			return new int[ 0 ];
+
+		final double[] pos = new double[] { x, y, zs == null ? 0. : z };
+		final int[] lo = new int[ 3 ];
+		final int[] hi = new int[ 3 ];
+		long nCellsInBox = 1;
+		for ( int d = 0; d < 3; d++ )
+		{
+			lo[ d ] = Math.max( 0, ( int ) Math.floor( ( pos[ d ] - r - origin[ d ] ) / cellSize ) );
+			hi[ d ] = Math.min( gridSize[ d ] - 1, ( int ) Math.floor( ( pos[ d ] + r - origin[ d ] ) / cellSize ) );
+			if ( hi[ d ] < lo[ d ] )
+				return new int[ 0 ];
+			nCellsInBox *= hi[ d ] - lo[ d ] + 1;
+		}
+
+		final Collector collector = new Collector( pos, r * r );
+		if ( nCellsInBox < c1 - c0 )
+		{
+			// Few cells in the box: look each of them up.
+			for ( int iz = lo[ 2 ]; iz <= hi[ 2 ]; iz++ )
+				for ( int iy = lo[ 1 ]; iy <= hi[ 1 ]; iy++ )
+					for ( int ix = lo[ 0 ]; ix <= hi[ 0 ]; ix++ )
+					{
+						final int k = find( c0, c1, cellKey( ix, iy, iz ) );
+						if ( k >= 0 )
+							collector.collect( k );
+					}
+		}
+		else
+		{
+			// Scan the non-empty cells of the frame.
+			for ( int k = c0; k < c1; k++ )
+			{
+				final int key = cellKeys.getInt( k );
+				final int ix = key % gridSize[ 0 ];
+				final int iy = ( key / gridSize[ 0 ] ) % gridSize[ 1 ];
+				final int iz = key / gridSize[ 0 ] / gridSize[ 1 ];
+				if ( ix >= lo[ 0 ] && ix <= hi[ 0 ] && iy >= lo[ 1 ] && iy <= hi[ 1 ] && iz >= lo[ 2 ] && iz <= hi[ 2 ] )
+					collector.collect( k );
+			}
+		}
+		return collector.result();
+	}
+
+	@Override
+	public void close()
+	{
+		reader.close();
+	}
+
+	private int cellKey( final int ix, final int iy, final int iz )
+	{
+		return ix + gridSize[ 0 ] * ( iy + gridSize[ 1 ] * iz );
+	}
+
+	/**
+	 * Binary search of a cell key in the cells of a frame.
+	 */
+	private int find( final int from, final int to, final int key )
+	{
+		int lo = from;
+		int hi = to - 1;
+		while ( lo <= hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			final int midKey = cellKeys.getInt( mid );
+			if ( midKey < key )
+				lo = mid + 1;
+			else if ( midKey > key )
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	private final class Collector
+	{
+
+		private final double[] pos;
+
+		private final double r2;
+
+		private int[] found = new int[ 16 ];
+
+		private int n = 0;
+
+		private Collector( final double[] pos, final double r2 )
+		{
+			this.pos = pos;
+			this.r2 = r2;
+		}
+
+		private void collect( final int cell )
+		{
+			final int start = cellStarts.getInt( cell );
+			final int end = cellStarts.getInt( cell + 1 );
+			for ( int i = start; i < end; i++ )
+			{
+				final int row = rows.getInt( i );
+				final double dx = xs.getDouble( row ) - pos[ 0 ];
+				final double dy = ys.getDouble( row ) - pos[ 1 ];
+				final double dz = zs == null ? 0. : zs.getDouble( row ) - pos[ 2 ];
+				if ( dx * dx + dy * dy + dz * dz > r2 )
+					continue;
+				if ( n == found.length )
+					found = Arrays.copyOf( found, 2 * n );
+				found[ n++ ] = ids.getInt( row );
+			}
+		}
+
+		private int[] result()
+		{
+			return Arrays.copyOf( found, n );
+		}
+	}
+
+	/**
+	 * Builds the spatial index of the node columns of a GEFF group and writes
+	 * it in the same group. The node columns are given in row order, as they
+	 * were just written.
+	 *
+	 * @param writer
+	 *            the writer.
+	 * @param group
+	 *            the path of the GEFF group relative to the writer, or an
+	 *            empty string if the writer is opened on the group.
+	 * @param chunkSize
+	 *            the chunk size of the index arrays.
+	 * @param cellSize
+	 *            the size of the grid cells. If not strictly positive, it is
+	 *            set to 4 times the mean node radius.
+	 * @param ts
+	 *            the frame of each node.
+	 * @param xs
+	 *            the X position of each node.
+	 * @param ys
+	 *            the Y position of each node.
+	 * @param zs
+	 *            the Z position of each node, or <code>null</code> in 2D.
+	 * @param radii
+	 *            the radius of each node.
+	 */
+	static void write( final N5Writer writer, final String group, final int chunkSize, final double cellSize, final int[] ts, final double[] xs, final double[] ys, final double[] zs, final double[] radii )
+	{
+		final int n = ts.length;
+		final double[][] pos = new double[][] { xs, ys, zs == null ? new double[ n ] : zs };
+
+		double size = cellSize;
+		if ( size <= 0. )
+		{
+			double sum = 0.;
+			for ( final double r : radii )
+				sum += r;
+			size = ( n == 0 || sum <= 0. ) ? 1. : 4. * sum / n;
+		}
+
+		// Grid geometry, common to all frames.
+		final double[] origin = new double[ 3 ];
+		final int[] gridSize = new int[ 3 ];
+		int minFrame = Integer.MAX_VALUE;
+		int maxFrame = Integer.MIN_VALUE;
+		for ( final int t : ts )
+		{
+			minFrame = Math.min( minFrame, t );
+			maxFrame = Math.max( maxFrame, t );
+		}
+		if ( n == 0 )
+			minFrame = maxFrame = 0;
+		final double[] extent = new double[ 3 ];
+		for ( int d = 0; d < 3; d++ )
+		{
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for ( final double v : pos[ d ] )
+			{
+				min = Math.min( min, v );
+				max = Math.max( max, v );
+			}
+			origin[ d ] = n == 0 ? 0. : min;
+			extent[ d ] = n == 0 ? 0. : max - min;
+		}
+		// Grow the cells until the linear cell index fits in an int.
+		while ( true )
+		{
+			long nCells = 1;
+			for ( int d = 0; d < 3; d++ )
+			{
+				gridSize[ d ] = ( int ) Math.min( Integer.MAX_VALUE, ( long ) Math.floor( extent[ d ] / size ) + 1 );
+				nCells *= gridSize[ d ];
+			}
+			if ( nCells <= Integer.MAX_VALUE )
+				break;
+			size *= 2.;
+		}
+
+		// Sort rows by frame.
+		final int nFrames = maxFrame - minFrame + 1;
+		final int[] frameRowStarts = new int[ nFrames + 1 ];
+		for ( final int t : ts )
+			frameRowStarts[ t - minFrame + 1 ]++;
+		for ( int f = 0; f < nFrames; f++ )
+			frameRowStarts[ f + 1 ] += frameRowStarts[ f ];
+		final int[] byFrame = new int[ n ];
+		final int[] fill = Arrays.copyOf( frameRowStarts, nFrames );
+		for ( int row = 0; row < n; row++ )
+			byFrame[ fill[ ts[ row ] - minFrame ]++ ] = row;
+
+		// Then by cell within each frame.
+		final int[] sortedRows = new int[ n ];
+		final int[] frameStarts = new int[ nFrames + 1 ];
+		int[] cellKeys = new int[ 16 ];
+		int[] cellStarts = new int[ 16 ];
+		int nCells = 0;
+		for ( int f = 0; f < nFrames; f++ )
+		{
+			frameStarts[ f ] = nCells;
+			final int start = frameRowStarts[ f ];
+			final int end = frameRowStarts[ f + 1 ];
+			final long[] keys = new long[ end - start ];
+			for ( int i = start; i < end; i++ )
+			{
+				final int row = byFrame[ i ];
+				int key = 0;
+				for ( int d = 2; d >= 0; d-- )
+				{
+					final int c = Math.min( gridSize[ d ] - 1, ( int ) ( ( pos[ d ][ row ] - origin[ d ] ) / size ) );
+					key = key * gridSize[ d ] + c;
+				}
+				keys[ i - start ] = ( ( long ) key << 32 ) | row;
+			}
+			Arrays.sort( keys );
+			int previous = -1;
+			for ( int i = 0; i < keys.length; i++ )
+			{
+				final int key = ( int ) ( keys[ i ] >> 32 );
+				sortedRows[ start + i ] = ( int ) keys[ i ];
+				if ( key != previous )
+				{
+					if ( nCells == cellKeys.length )
+					{
+						cellKeys = Arrays.copyOf( cellKeys, 2 * nCells );
+						cellStarts = Arrays.copyOf( cellStarts, 2 * nCells );
+					}
+					cellKeys[ nCells ] = key;
+					cellStarts[ nCells ] = start + i;
+					nCells++;
+					previous = key;
+				}
+			}
+		}
+		frameStarts[ nFrames ] = nCells;
+		cellStarts = Arrays.copyOf( cellStarts, nCells + 1 );
+		cellStarts[ nCells ] = n;
+
+		clear( writer, group );
+		final GeffColumnWriter columnWriter = new GeffColumnWriter( writer, group, chunkSize, false );
+		columnWriter.writeInts( INDEX_GROUP + "/frame_starts", frameStarts, 1 );
+		columnWriter.writeInts( INDEX_GROUP + "/cell_keys", Arrays.copyOf( cellKeys, nCells ), 1 );
+		columnWriter.writeInts( INDEX_GROUP + "/cell_starts", cellStarts, 1 );
+		columnWriter.writeInts( INDEX_GROUP + "/rows", sortedRows, 1 );
+		final String path = GeffStore.resolve( group, INDEX_GROUP );
+		writer.setAttribute( path, "origin", origin );
+		writer.setAttribute( path, "cell_size", size );
+		writer.setAttribute( path, "grid_size", gridSize );
+		writer.setAttribute( path, "min_frame", minFrame );
+		writer.setAttribute( path, "n_frames", nFrames );
+	}
+
+	/**
+	 * Removes the spatial index of a GEFF group, if any. It must be called
+	 * when the node columns are rewritten without a new index.
+	 */
+	static void clear( final N5Writer writer )
+	{
+		clear( writer, "" );
+	}
+
+	/**
+	 * Removes the index of the GEFF group at the specified path of the
+	 * writer.
+	 */
+	static void clear( final N5Writer writer, final String group )
+	{
+		final String path = GeffStore.resolve( group, INDEX_GROUP );
+		if ( writer.exists( path ) )
+			writer.remove( path );
+	}
+}
@@ -0,0 +1,452 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.FileUtils;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.universe.N5Factory;
+import org.janelia.saalfeldlab.n5.universe.StorageFormat;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.mastodon.geff.GeffMetadata;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Opens GEFF stores on the local file system or in an object store, and runs
+ * their chunk requests.
+ * <p>
+ * Locations with a URI scheme other than <code>file</code>, like
+ * <code>s3://bucket/data.zarr</code> or
+ * <code>https://host/bucket/data.zarr</code>, are opened as Zarr stores with
+ * the N5 factory. Credentials and endpoints are resolved by the factory, which
+ * can be replaced with {@link #setFactory(N5Factory)}, e.g. to point to a
+ * local S3-compatible server. Other locations are opened as Zarr folders.
+ * <p>
+ * Column chunks are read and written with at most
+ * {@link #getMaxInFlight()} concurrent requests per column operation, and
+ * failed requests are retried with an exponential back-off up to
+ * {@link #getMaxAttempts()} times. Object stores only support the column
+ * paths: the GEFF library, and thus polygons, need a local folder.
+ */
+public final class GeffStore
+{
+
+	/** Number of rows per chunk of the GEFF groups created in object stores. */
+	static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/** Delay before the first retry of a failed request, in milliseconds. */
+	private static final long RETRY_DELAY = 100;
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool( new IOThreadFactory() );
+
+	private static volatile N5Factory factory = new N5Factory().cacheAttributes( true );
+
+	private static volatile int maxInFlight = 16;
+
+	private static volatile int maxAttempts = 4;
+
+	private GeffStore()
+	{}
+
+	/**
+	 * Returns <code>true</code> if the location is a URI with a scheme other
+	 * than <code>file</code>. Windows drive letters are not schemes.
+	 *
+	 * @param location
+	 *            the path or URI of a Zarr store.
+	 */
+	public static boolean isRemote( final String location )
+	{
+		final int colon = location.indexOf( ':' );
+		if ( colon < 2 )
+			return false;
+		final String scheme = location.substring( 0, colon ).toLowerCase( Locale.ROOT );
+		return scheme.matches( "[a-z][a-z0-9+.-]*" ) && !"file".equals( scheme );
+	}
+
+	/**
+	 * Returns <code>true</code> if the reader is not backed by the local file
+	 * system.
+	 */
+	static boolean isRemote( final N5Reader reader )
+	{
+		final String scheme = reader.getURI().getScheme();
+		return scheme != null && !"file".equals( scheme );
+	}
+
+	/**
+	 * Opens a Zarr store for reading.
+	 *
+	 * @param location
+	 *            the path or URI of the store.
+	 * @return a new reader, to be closed after use.
+	 * @throws IOException
+	 *             if the store cannot be opened.
+	 */
+	public static N5Reader openReader( final String location ) throws IOException
+	{
+		try
+		{
+			return isRemote( location )
+					? factory.openReader( StorageFormat.ZARR, location )
+					: new N5ZarrReader( location );
+		}
+		catch ( final N5Exception e )
+		{
+			throw new IOException( "Could not open the Zarr store " + location, e );
+		}
+	}
+
+	/**
+	 * Opens a Zarr store for writing, creating it if needed.
+	 *
+	 * @param location
+	 *            the path or URI of the store.
+	 * @return a new writer, to be closed after use.
+	 * @throws IOException
+	 *             if the store cannot be opened.
+	 */
+	public static N5Writer openWriter( final String location ) throws IOException
+	{
+		try
+		{
+			return isRemote( location )
+					? factory.openWriter( StorageFormat.ZARR, location )
+					: new N5ZarrWriter( location, true );
+		}
+		catch ( final N5Exception e )
+		{
+			throw new IOException( "Could not open the Zarr store " + location, e );
+		}
+	}
+
+	/**
+	 * Sets the factory used to open the stores of remote locations.
+	 */
+	public static void setFactory( final N5Factory factory )
+	{
+		GeffStore.factory = factory;
+	}
+
+	public static N5Factory getFactory()
+	{
+		return factory;
+	}
+
+	/**
+	 * Sets the maximal number of concurrent chunk requests of a column
+	 * operation. A value of 1 reads and writes chunks sequentially.
+	 */
+	public static void setMaxInFlight( final int maxInFlight )
+	{
+		GeffStore.maxInFlight = Math.max( 1, maxInFlight );
+	}
+
+	public static int getMaxInFlight()
+	{
+		return maxInFlight;
+	}
+
+	/**
+	 * Sets the maximal number of attempts of a chunk request, including the
+	 * first one.
+	 */
+	public static void setMaxAttempts( final int maxAttempts )
+	{
+		GeffStore.maxAttempts = Math.max( 1, maxAttempts );
+	}
+
+	public static int getMaxAttempts()
+	{
+		return maxAttempts;
+	}
+
+	/**
+	 * Returns the path relative to a store of a path relative to one of its
+	 * GEFF groups.
+	 *
+	 * @param group
+	 *            the path of the GEFF group in the store, or an empty string
+	 *            for the store root.
+	 * @param path
+	 *            the path relative to the group, <code>/</code> for the group
+	 *            itself.
+	 */
+	static String resolve( final String group, final String path )
+	{
+		if ( group.isEmpty() )
+			return path;
+		return "/".equals( path ) ? group : group + "/" + path;
+	}
+
+	/**
+	 * Returns the number of rows per chunk of the node ids of a GEFF group, or
+	 * {@link #DEFAULT_CHUNK_SIZE} for a new group.
+	 */
+	static int chunkSize( final N5Reader reader )
+	{
+		return chunkSize( reader, "" );
+	}
+
+	/**
+	 * Returns the number of rows per chunk of the node ids of the GEFF group
+	 * at the specified path of the reader.
+	 */
+	static int chunkSize( final N5Reader reader, final String group )
+	{
+		final String ids = resolve( group, "nodes/ids" );
+		if ( !reader.datasetExists( ids ) )
+			return DEFAULT_CHUNK_SIZE;
+		final DatasetAttributes attributes = reader.getDatasetAttributes( ids );
+		final int[] blockSize = attributes.getBlockSize();
+		return blockSize[ blockSize.length - 1 ];
+	}
+
+	/**
+	 * Runs a request, retrying it with an exponential back-off if it fails
+	 * with an I/O error. Other failures, such as missing keys, invalid
+	 * attributes or unsupported data types, are thrown at once.
+	 */
+	static < T > T retry( final Supplier< T > request )
+	{
+		for ( int attempt = 1;; attempt++ )
+		{
+			try
+			{
+				return request.get();
+			}
+			catch ( final N5Exception | UncheckedIOException e )
+			{
+				if ( attempt >= maxAttempts || !isIOFailure( e ) )
+					throw e;
+				try
+				{
+					Thread.sleep( RETRY_DELAY << ( attempt - 1 ) );
+				}
+				catch ( final InterruptedException ie )
+				{
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	static void retry( final Runnable request )
+	{
+		retry( () -> {
+			request.run();
+			return null;
+		} );
+	}
+
+	/**
+	 * Returns <code>true</code> if a failure is an I/O error that may succeed
+	 * when retried. A missing key will still be missing.
+	 */
+	private static boolean isIOFailure( final RuntimeException e )
+	{
+		if ( e instanceof UncheckedIOException )
+			return true;
+		return e instanceof N5Exception.N5IOException && !( e instanceof N5Exception.N5NoSuchKeyException );
+	}
+
+	/**
+	 * Runs a task for the indices <code>0</code> to <code>n - 1</code> with at
+	 * most {@link #getMaxInFlight()} of them running at the same time. The
+	 * calling thread takes part, and the method returns once all the tasks
+	 * are done. After a failure, the remaining tasks are skipped and the first
+	 * failure is thrown, with the next ones as suppressed exceptions.
+	 * <p>
+	 * Tasks must not call this method themselves.
+	 *
+	 * @param n
+	 *            the number of tasks.
+	 * @param task
+	 *            the task, called with the task index.
+	 */
+	static void forEach( final int n, final IntConsumer task )
+	{
+		final int nWorkers = Math.min( n, maxInFlight );
+		if ( nWorkers <= 1 )
+		{
+			for ( int i = 0; i < n; i++ )
+				task.accept( i );
+			return;
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicBoolean failed = new AtomicBoolean();
+		final Runnable worker = () -> {
+			try
+			{
+				int i;
+				while ( !failed.get() && ( i = next.getAndIncrement() ) < n )
+					task.accept( i );
+			}
+			catch ( final RuntimeException | Error e )
+			{
+				failed.set( true );
+				throw e;
+			}
+		};
+
+		final List< Future< ? > > futures = new ArrayList<>( nWorkers - 1 );
+		for ( int w = 1; w < nWorkers; w++ )
+			futures.add( EXECUTOR.submit( worker ) );
+
+		RuntimeException error = null;
+		try
+		{
+			worker.run();
+		}
+		catch ( final RuntimeException e )
+		{
+			error = e;
+		}
+		for ( final Future< ? > future : futures )
+		{
+			try
+			{
+				future.get();
+			}
+			catch ( final ExecutionException e )
+			{
+				final Throwable cause = e.getCause();
+				if ( cause instanceof Error )
+					throw ( Error ) cause;
+				error = merge( error, ( RuntimeException ) cause );
+			}
+			catch ( final InterruptedException e )
+			{
+				failed.set( true );
+				Thread.currentThread().interrupt();
+				error = merge( error, new N5Exception( "Interrupted while waiting for chunk requests." ) );
+			}
+		}
+		if ( error != null )
+			throw error;
+	}
+
+	private static RuntimeException merge( final RuntimeException error, final RuntimeException e )
+	{
+		if ( error == null )
+			return e;
+		error.addSuppressed( e );
+		return error;
+	}
+
+	/**
+	 * Reads the GEFF metadata of a group opened with a reader. The GEFF
+	 * library only reads metadata from a local folder, so the group
+	 * attributes are copied to a temporary one first.
+	 */
+	static GeffMetadata readMetadata( final N5Reader reader ) throws IOException
+	{
+		final Path tmp = Files.createTempDirectory( "geff-metadata" );
+		try
+		{
+			try (final N5ZarrWriter local = new N5ZarrWriter( tmp.toString(), true ))
+			{
+				copyAttributes( reader, "/", local, "/" );
+			}
+			return GeffMetadata.readFromZarr( tmp.toString() );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( tmp.toFile() );
+		}
+	}
+
+	/**
+	 * Writes the GEFF metadata of a group opened with a writer, through a
+	 * temporary local folder.
+	 *
+	 * @see #readMetadata(N5Reader)
+	 */
+	static void writeMetadata( final GeffMetadata metadata, final N5Writer writer ) throws IOException
+	{
+		writeMetadata( metadata, writer, "" );
+	}
+
+	/**
+	 * Writes the GEFF metadata of the GEFF group at the specified path of the
+	 * writer.
+	 */
+	static void writeMetadata( final GeffMetadata metadata, final N5Writer writer, final String group ) throws IOException
+	{
+		final Path tmp = Files.createTempDirectory( "geff-metadata" );
+		try
+		{
+			GeffMetadata.writeToZarr( metadata, tmp.toString() );
+			try (final N5ZarrReader local = new N5ZarrReader( tmp.toString() ))
+			{
+				copyAttributes( local, "/", writer, resolve( group, "/" ) );
+			}
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( tmp.toFile() );
+		}
+	}
+
+	private static void copyAttributes( final N5Reader from, final String fromPath, final N5Writer to, final String toPath )
+	{
+		for ( final String key : from.listAttributes( fromPath ).keySet() )
+			to.setAttribute( toPath, key, from.getAttribute( fromPath, key, JsonElement.class ) );
+	}
+
+	private static final class IOThreadFactory implements ThreadFactory
+	{
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread( final Runnable r )
+		{
+			final Thread thread = new Thread( r, "GeffStore-" + count.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		}
+	}
+}
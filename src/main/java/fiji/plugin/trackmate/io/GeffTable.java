@@ -0,0 +1,613 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+/**
+ * Read-only, columnar view of a GEFF file, for batch statistics that do not
+ * need a TrackMate model.
+ * <p>
+ * The core node and edge columns are loaded as primitive arrays indexed by
+ * row, in storage order. Feature columns are read on first access only. No
+ * spot, edge or graph object is created, so a table loads much faster and
+ * with far less memory than {@link TrackMateGeffReader#readModel(String)}.
+ * <p>
+ * Nodes are grouped by track with the <code>segment_id</code> column when
+ * there is one, and otherwise with the connected components of the graph.
+ * Nodes that do not belong to a track have the track id <code>-1</code>.
+ * Per-track aggregates are returned as arrays parallel to
+ * {@link #trackIds()}:
+ *
+ * <pre>
+ * try (GeffTable table = GeffTable.open( path ))
+ * {
+ * 	final int[] tracks = table.trackIds();
+ * 	final double[] nSpots = table.aggregateNodesByTrack( null, Aggregation.COUNT );
+ * 	final double[] meanSpeed = table.aggregateEdgesByTrack( table.edgeSpeeds(), Aggregation.MEAN );
+ * 	final int[] nDivisions = table.divisionsByTrack();
+ * }
+ * </pre>
+ *
+ * Missing feature values are returned as {@link Double#NaN} and are skipped by
+ * the aggregations.
+ */
+public class GeffTable implements AutoCloseable
+{
+
+	/**
+	 * Aggregation of the values of a column over the rows of a track.
+	 */
+	public enum Aggregation
+	{
+		COUNT, SUM, MEAN, MIN, MAX;
+	}
+
+	private final N5Reader reader;
+
+	private final int[] ids;
+
+	private final int[] frames;
+
+	private final double[] x;
+
+	private final double[] y;
+
+	private final double[] z;
+
+	private final double[] radius;
+
+	private final int[] edgeSources;
+
+	private final int[] edgeTargets;
+
+	private final double[] edgeDistances;
+
+	private final int[] nodeTrackIds;
+
+	private final int[] trackIds;
+
+	/** Index of the track of each node row in {@link #trackIds}, or -1. */
+	private final int[] nodeGroups;
+
+	/** Index of the track of each edge row in {@link #trackIds}, or -1. */
+	private final int[] edgeGroups;
+
+	private final Map< String, double[] > nodeFeatures = new HashMap<>();
+
+	private final Map< String, double[] > edgeFeatures = new HashMap<>();
+
+	private GeffTable( final N5Reader reader )
+	{
+		this.reader = reader;
+		this.ids = GeffColumn.open( reader, "nodes/ids" ).readAllInts();
+		this.frames = GeffColumn.open( reader, GeffColumn.nodeProp( "t" ) ).readAllInts();
+		this.x = readNodeDoubles( "x", 0. );
+		this.y = readNodeDoubles( "y", 0. );
+		this.z = readNodeDoubles( "z", 0. );
+		this.radius = readNodeDoubles( "radius", Double.NaN );
+
+		// Edges, resolved to node rows.
+		final GeffIdIndex index = GeffIdIndex.of( ids );
+		final GeffColumn edgeIdColumn = GeffColumn.open( reader, "edges/ids" );
+		final int[] edgeIds = edgeIdColumn == null ? new int[ 0 ] : edgeIdColumn.readAllInts();
+		final int nEdges = edgeIds.length / 2;
+		this.edgeSources = new int[ nEdges ];
+		this.edgeTargets = new int[ nEdges ];
+		for ( int e = 0; e < nEdges; e++ )
+		{
+			edgeSources[ e ] = index.rowOf( edgeIds[ 2 * e ] );
+			edgeTargets[ e ] = index.rowOf( edgeIds[ 2 * e + 1 ] );
+		}
+		final GeffColumn distanceColumn = GeffColumn.open( reader, GeffColumn.edgeProp( "distance" ) );
+		this.edgeDistances = distanceColumn == null ? edgeLengths() : distanceColumn.readAllDoubles();
+
+		// Tracks.
+		final GeffColumn segmentColumn = GeffColumn.open( reader, GeffColumn.nodeProp( "segment_id" ) );
+		this.nodeTrackIds = segmentColumn == null ? GeffComponents.label( ids.length, edgeSources, edgeTargets ) : segmentColumn.readAllInts();
+		final TreeSet< Integer > distinct = new TreeSet<>();
+		for ( final int trackId : nodeTrackIds )
+			if ( trackId >= 0 )
+				distinct.add( trackId );
+		this.trackIds = distinct.stream().mapToInt( Integer::intValue ).toArray();
+		this.nodeGroups = new int[ ids.length ];
+		for ( int row = 0; row < ids.length; row++ )
+			nodeGroups[ row ] = nodeTrackIds[ row ] < 0 ? -1 : Arrays.binarySearch( trackIds, nodeTrackIds[ row ] );
+		this.edgeGroups = new int[ nEdges ];
+		for ( int e = 0; e < nEdges; e++ )
+			edgeGroups[ e ] = edgeSources[ e ] < 0 ? -1 : nodeGroups[ edgeSources[ e ] ];
+	}
+
+	/**
+	 * Opens the GEFF group in the specified Zarr file as a table.
+	 *
+	 * @param zarrPath
+	 *            the path or URI of the Zarr file.
+	 * @return the table, to be closed after use.
+	 * @throws IOException
+	 *             if the GEFF group has no node columns.
+	 */
+	public static GeffTable open( final String zarrPath ) throws IOException
+	{
+		final N5Reader reader = GeffStore.openReader( GeffIOUtils.geffPath( zarrPath ) );
+		if ( !reader.datasetExists( "nodes/ids" ) )
+		{
+			reader.close();
+			throw new IOException( "The GEFF file " + zarrPath + " has no node columns." );
+		}
+		return new GeffTable( reader );
+	}
+
+	@Override
+	public void close()
+	{
+		reader.close();
+	}
+
+	/*
+	 * NODES.
+	 */
+
+	/**
+	 * Returns the number of nodes.
+	 */
+	public int nodeCount()
+	{
+		return ids.length;
+	}
+
+	/**
+	 * Returns the GEFF ids of the nodes.
+	 */
+	public int[] nodeIds()
+	{
+		return ids;
+	}
+
+	public int[] frames()
+	{
+		return frames;
+	}
+
+	public double[] x()
+	{
+		return x;
+	}
+
+	public double[] y()
+	{
+		return y;
+	}
+
+	/**
+	 * Returns the Z coordinates of the nodes, all 0 in 2D.
+	 */
+	public double[] z()
+	{
+		return z;
+	}
+
+	/**
+	 * Returns the radius of the nodes, {@link Double#NaN} if the file has no
+	 * radius column.
+	 */
+	public double[] radius()
+	{
+		return radius;
+	}
+
+	/**
+	 * Returns the track id of the nodes, <code>-1</code> for the nodes that
+	 * do not belong to a track.
+	 */
+	public int[] nodeTrackIds()
+	{
+		return nodeTrackIds;
+	}
+
+	/**
+	 * Returns the names of the node feature columns.
+	 */
+	public Set< String > nodeFeatures()
+	{
+		return listFeatures( "nodes/props", GeffColumn.GEFF_NODE_PROPS );
+	}
+
+	/**
+	 * Returns the values of the specified node feature, read on first access.
+	 *
+	 * @param name
+	 *            the feature name.
+	 * @return the feature values, indexed by node row.
+	 * @throws IllegalArgumentException
+	 *             if the file has no such node feature.
+	 */
+	public double[] nodeFeature( final String name )
+	{
+		return nodeFeatures.computeIfAbsent( name, k -> readFeature( GeffColumn.nodeProp( k ), k, ids.length ) );
+	}
+
+	/*
+	 * EDGES.
+	 */
+
+	/**
+	 * Returns the number of edges.
+	 */
+	public int edgeCount()
+	{
+		return edgeSources.length;
+	}
+
+	/**
+	 * Returns the row of the source node of the edges, <code>-1</code> if the
+	 * source id is not in the node columns.
+	 */
+	public int[] edgeSources()
+	{
+		return edgeSources;
+	}
+
+	/**
+	 * Returns the row of the target node of the edges, <code>-1</code> if the
+	 * target id is not in the node columns.
+	 */
+	public int[] edgeTargets()
+	{
+		return edgeTargets;
+	}
+
+	/**
+	 * Returns the length of the edges, from the <code>distance</code> column,
+	 * or computed from the node positions if there is none.
+	 */
+	public double[] edgeDistances()
+	{
+		return edgeDistances;
+	}
+
+	/**
+	 * Returns the speed of the edges, in space units per frame: the edge
+	 * distance divided by the number of frames between its end-points.
+	 * Edges within a frame or with unknown end-points have a
+	 * {@link Double#NaN} speed.
+	 */
+	public double[] edgeSpeeds()
+	{
+		final double[] out = new double[ edgeSources.length ];
+		for ( int e = 0; e < out.length; e++ )
+		{
+			final int s = edgeSources[ e ];
+			final int t = edgeTargets[ e ];
+			final int dt = ( s < 0 || t < 0 ) ? 0 : Math.abs( frames[ t ] - frames[ s ] );
+			out[ e ] = dt == 0 ? Double.NaN : edgeDistances[ e ] / dt;
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the track id of the edges, <code>-1</code> for the edges that
+	 * do not belong to a track.
+	 */
+	public int[] edgeTrackIds()
+	{
+		final int[] out = new int[ edgeGroups.length ];
+		for ( int e = 0; e < out.length; e++ )
+			out[ e ] = edgeGroups[ e ] < 0 ? -1 : trackIds[ edgeGroups[ e ] ];
+		return out;
+	}
+
+	/**
+	 * Returns the names of the edge feature columns.
+	 */
+	public Set< String > edgeFeatures()
+	{
+		return listFeatures( "edges/props", GeffColumn.GEFF_EDGE_PROPS );
+	}
+
+	/**
+	 * Returns the values of the specified edge feature, read on first access.
+	 *
+	 * @param name
+	 *            the feature name.
+	 * @return the feature values, indexed by edge row.
+	 * @throws IllegalArgumentException
+	 *             if the file has no such edge feature.
+	 */
+	public double[] edgeFeature( final String name )
+	{
+		return edgeFeatures.computeIfAbsent( name, k -> readFeature( GeffColumn.edgeProp( k ), k, edgeSources.length ) );
+	}
+
+	/*
+	 * SCANS.
+	 */
+
+	/**
+	 * Returns the rows whose value in the specified column is within a range,
+	 * in increasing order.
+	 *
+	 * @param column
+	 *            a node or edge column.
+	 * @param min
+	 *            the minimal value, inclusive.
+	 * @param max
+	 *            the maximal value, inclusive.
+	 * @return the selected rows.
+	 */
+	public static int[] select( final double[] column, final double min, final double max )
+	{
+		int n = 0;
+		for ( final double val : column )
+			if ( val >= min && val <= max )
+				n++;
+		final int[] out = new int[ n ];
+		int i = 0;
+		for ( int row = 0; row < column.length; row++ )
+			if ( column[ row ] >= min && column[ row ] <= max )
+				out[ i++ ] = row;
+		return out;
+	}
+
+	/**
+	 * Returns the values of a column at the specified rows.
+	 */
+	public static double[] gather( final double[] column, final int[] rows )
+	{
+		final double[] out = new double[ rows.length ];
+		for ( int i = 0; i < rows.length; i++ )
+			out[ i ] = column[ rows[ i ] ];
+		return out;
+	}
+
+	/**
+	 * Aggregates the values of a whole column, skipping {@link Double#NaN}
+	 * values.
+	 */
+	public static double aggregate( final double[] column, final Aggregation aggregation )
+	{
+		final double[] out = aggregate( column, null, 1, aggregation, column.length );
+		return out[ 0 ];
+	}
+
+	/*
+	 * GROUP BY TRACK.
+	 */
+
+	/**
+	 * Returns the ids of the tracks, sorted.
+	 */
+	public int[] trackIds()
+	{
+		return trackIds;
+	}
+
+	/**
+	 * Aggregates a node column over the nodes of each track.
+	 *
+	 * @param column
+	 *            the node column. Can be <code>null</code> for
+	 *            {@link Aggregation#COUNT}.
+	 * @param aggregation
+	 *            the aggregation.
+	 * @return the aggregated values, parallel to {@link #trackIds()}.
+	 *         {@link Double#NaN} for the tracks that have no value.
+	 */
+	public double[] aggregateNodesByTrack( final double[] column, final Aggregation aggregation )
+	{
+		return aggregate( column, nodeGroups, trackIds.length, aggregation, ids.length );
+	}
+
+	/**
+	 * Aggregates an edge column over the edges of each track.
+	 *
+	 * @param column
+	 *            the edge column. Can be <code>null</code> for
+	 *            {@link Aggregation#COUNT}.
+	 * @param aggregation
+	 *            the aggregation.
+	 * @return the aggregated values, parallel to {@link #trackIds()}.
+	 *         {@link Double#NaN} for the tracks that have no value.
+	 */
+	public double[] aggregateEdgesByTrack( final double[] column, final Aggregation aggregation )
+	{
+		return aggregate( column, edgeGroups, trackIds.length, aggregation, edgeSources.length );
+	}
+
+	/**
+	 * Returns the duration of each track, in frames: the difference between
+	 * its last and first frame.
+	 */
+	public int[] durationsByTrack()
+	{
+		final int[] first = new int[ trackIds.length ];
+		final int[] last = new int[ trackIds.length ];
+		Arrays.fill( first, Integer.MAX_VALUE );
+		Arrays.fill( last, Integer.MIN_VALUE );
+		for ( int row = 0; row < ids.length; row++ )
+		{
+			final int g = nodeGroups[ row ];
+			if ( g < 0 )
+				continue;
+			first[ g ] = Math.min( first[ g ], frames[ row ] );
+			last[ g ] = Math.max( last[ g ], frames[ row ] );
+		}
+		final int[] out = new int[ trackIds.length ];
+		for ( int g = 0; g < out.length; g++ )
+			out[ g ] = last[ g ] - first[ g ];
+		return out;
+	}
+
+	/**
+	 * Returns the number of divisions of each track: the number of its nodes
+	 * that have more than one child. Edges are oriented forward in time.
+	 */
+	public int[] divisionsByTrack()
+	{
+		final int[] nChildren = new int[ ids.length ];
+		for ( int e = 0; e < edgeSources.length; e++ )
+		{
+			final int s = edgeSources[ e ];
+			final int t = edgeTargets[ e ];
+			if ( s < 0 || t < 0 )
+				continue;
+			nChildren[ frames[ s ] <= frames[ t ] ? s : t ]++;
+		}
+		final int[] out = new int[ trackIds.length ];
+		for ( int row = 0; row < ids.length; row++ )
+			if ( nChildren[ row ] > 1 && nodeGroups[ row ] >= 0 )
+				out[ nodeGroups[ row ] ]++;
+		return out;
+	}
+
+	/**
+	 * Single pass aggregation of a column over groups of rows.
+	 *
+	 * @param groups
+	 *            the group of each row, <code>-1</code> to skip the row. If
+	 *            <code>null</code>, all the rows are in group 0.
+	 */
+	private static double[] aggregate( final double[] column, final int[] groups, final int nGroups, final Aggregation aggregation, final int nRows )
+	{
+		if ( column == null && aggregation != Aggregation.COUNT )
+			throw new IllegalArgumentException( "A column is required for the aggregation " + aggregation );
+
+		final double[] out = new double[ nGroups ];
+		final int[] counts = new int[ nGroups ];
+		switch ( aggregation )
+		{
+		case MIN:
+			Arrays.fill( out, Double.POSITIVE_INFINITY );
+			break;
+		case MAX:
+			Arrays.fill( out, Double.NEGATIVE_INFINITY );
+			break;
+		default:
+			break;
+		}
+
+		for ( int row = 0; row < nRows; row++ )
+		{
+			final int g = groups == null ? 0 : groups[ row ];
+			if ( g < 0 )
+				continue;
+			final double val = column == null ? 0. : column[ row ];
+			if ( Double.isNaN( val ) )
+				continue;
+			counts[ g ]++;
+			switch ( aggregation )
+			{
+			case SUM:
+			case MEAN:
+				out[ g ] += val;
+				break;
+			case MIN:
+				out[ g ] = Math.min( out[ g ], val );
+				break;
+			case MAX:
+				out[ g ] = Math.max( out[ g ], val );
+				break;
+			default:
+				break;
+			}
+		}
+
+		for ( int g = 0; g < nGroups; g++ )
+		{
+			if ( aggregation == Aggregation.COUNT )
+				out[ g ] = counts[ g ];
+			else if ( counts[ g ] == 0 )
+				out[ g ] = Double.NaN;
+			else if ( aggregation == Aggregation.MEAN )
+				out[ g ] /= counts[ g ];
+		}
+		return out;
+	}
+
+	private double[] readNodeDoubles( final String name, final double defaultValue )
+	{
+		final GeffColumn column = GeffColumn.open( reader, GeffColumn.nodeProp( name ) );
+		if ( column != null )
+			return column.readAllDoubles();
+
+		final double[] out = new double[ ids.length ];
+		Arrays.fill( out, defaultValue );
+		return out;
+	}
+
+	private double[] readFeature( final String path, final String name, final int rows )
+	{
+		final GeffColumn column = GeffColumn.open( reader, path );
+		if ( column == null || column.width() != 1 )
+			throw new IllegalArgumentException( "The GEFF file has no scalar feature " + name );
+		if ( column.size() != rows )
+			throw new IllegalArgumentException( "The feature column " + name + " has " + column.size() + " rows instead of " + rows + "." );
+
+		final double[] values = column.readAllDoubles();
+		// Integer features use Integer.MIN_VALUE for missing values.
+		if ( column.isInt() )
+			for ( int i = 0; i < values.length; i++ )
+				if ( values[ i ] == Integer.MIN_VALUE )
+					values[ i ] = Double.NaN;
+		return values;
+	}
+
+	private Set< String > listFeatures( final String propsGroup, final Set< String > excluded )
+	{
+		if ( !reader.exists( propsGroup ) )
+			return Collections.emptySet();
+
+		final Set< String > out = new TreeSet<>();
+		for ( final String name : reader.list( propsGroup ) )
+			if ( !excluded.contains( name ) && reader.datasetExists( propsGroup + "/" + name + "/values" ) )
+				out.add( name );
+		return out;
+	}
+
+	private double[] edgeLengths()
+	{
+		final double[] out = new double[ edgeSources.length ];
+		for ( int e = 0; e < out.length; e++ )
+		{
+			final int s = edgeSources[ e ];
+			final int t = edgeTargets[ e ];
+			if ( s < 0 || t < 0 )
+			{
+				out[ e ] = Double.NaN;
+				continue;
+			}
+			final double dx = x[ t ] - x[ s ];
+			final double dy = y[ t ] - y[ s ];
+			final double dz = z[ t ] - z[ s ];
+			out[ e ] = Math.sqrt( dx * dx + dy * dy + dz * dz );
+		}
+		return out;
+	}
+}
@@ -0,0 +1,370 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
+import org.mastodon.geff.GeffAxis;
+import org.mastodon.geff.GeffMetadata;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackMate;
+
+/**
+ * Converts a GEFF file to a TrackMate XML file without building a TrackMate
+ * model.
+ * <p>
+ * The GEFF columns are read chunk by chunk and the spots and tracks are
+ * written directly with a streaming XML writer. Only primitive arrays are kept
+ * in memory (node ids and frames, edge end-points and track membership). No
+ * {@link Spot} or graph object is ever created, so this works for files that
+ * would not fit in memory as a {@link fiji.plugin.trackmate.Model}.
+ * <p>
+ * Only the model section of the TrackMate file is written: the feature
+ * declarations of the extra GEFF columns, the spots and the tracks. Tracks are
+ * the connected components of the GEFF graph, and they are all marked as
+ * visible.
+ */
+public class GeffToTmXmlConverter
+{
+
+	/*
+	 * TrackMate XML keys.
+	 */
+
+	private static final String ROOT_ELEMENT = "TrackMate";
+
+	private static final String VERSION_ATTRIBUTE = "version";
+
+	private static final String MODEL_ELEMENT = "Model";
+
+	private static final String SPATIAL_UNITS_ATTRIBUTE = "spatialunits";
+
+	private static final String TIME_UNITS_ATTRIBUTE = "timeunits";
+
+	private static final String FEATURE_DECLARATIONS_ELEMENT = "FeatureDeclarations";
+
+	private static final String FEATURE_ELEMENT = "Feature";
+
+	private static final String SPOT_COLLECTION_ELEMENT = "AllSpots";
+
+	private static final String SPOT_COLLECTION_NSPOTS_ATTRIBUTE = "nspots";
+
+	private static final String SPOT_FRAME_COLLECTION_ELEMENT = "SpotsInFrame";
+
+	private static final String FRAME_ATTRIBUTE = "frame";
+
+	private static final String SPOT_ELEMENT = "Spot";
+
+	private static final String SPOT_ID_ATTRIBUTE = "ID";
+
+	private static final String SPOT_NAME_ATTRIBUTE = "name";
+
+	private static final String SPOT_VISIBILITY_ATTRIBUTE = "VISIBILITY";
+
+	/**
+	 * Quality written for spots when the GEFF file has no quality column, as
+	 * TmXmlWriter always writes it.
+	 */
+	private static final double DEFAULT_QUALITY = 1.;
+
+	private static final String TRACK_COLLECTION_ELEMENT = "AllTracks";
+
+	private static final String TRACK_ELEMENT = "Track";
+
+	private static final String TRACK_NAME_ATTRIBUTE = "name";
+
+	private static final String TRACK_ID_ATTRIBUTE = "TRACK_ID";
+
+	private static final String EDGE_ELEMENT = "Edge";
+
+	private static final String EDGE_SOURCE_ATTRIBUTE = "SPOT_SOURCE_ID";
+
+	private static final String EDGE_TARGET_ATTRIBUTE = "SPOT_TARGET_ID";
+
+	private static final String FILTERED_TRACKS_ELEMENT = "FilteredTracks";
+
+	private static final String TRACK_ID_ELEMENT = "TrackID";
+
+	/**
+	 * Converts the GEFF group of the specified Zarr file to a TrackMate XML
+	 * file.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file containing the GEFF group.
+	 * @param xmlPath
+	 *            the path to the TrackMate XML file to write.
+	 * @throws IOException
+	 *             if the GEFF file cannot be read or the XML file cannot be
+	 *             written.
+	 */
+	public static void convert( final String zarrPath, final String xmlPath ) throws IOException
+	{
+		// Geff is a subfolder of the Zarr file.
+		final String inputZarrPath = GeffIOUtils.geffPath( zarrPath );
+
+		// Units.
+		final GeffMetadata metadata = GeffMetadata.readFromZarr( inputZarrPath );
+		final GeffAxis[] axes = metadata.getGeffAxes();
+		final int xAxis = TrackMateGeffReader.findSpatialAxis( axes );
+		final int tAxis = TrackMateGeffReader.findTemporalAxis( axes );
+		final String spaceUnits = xAxis < 0 ? "pixel" : axes[ xAxis ].getUnit();
+		final String timeUnits = tAxis < 0 ? "frame" : axes[ tAxis ].getUnit();
+
+		try (final N5ZarrReader reader = new N5ZarrReader( inputZarrPath );
+				final OutputStream os = new BufferedOutputStream( new FileOutputStream( xmlPath ) ))
+		{
+			final XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter( os, "UTF-8" );
+			try
+			{
+				write( reader, spaceUnits, timeUnits, xml );
+			}
+			finally
+			{
+				xml.close();
+			}
+		}
+		catch ( final XMLStreamException e )
+		{
+			throw new IOException( "Could not write the TrackMate XML file " + xmlPath, e );
+		}
+	}
+
+	private static void write( final N5Reader reader, final String spaceUnits, final String timeUnits, final XMLStreamWriter xml ) throws XMLStreamException, IOException
+	{
+		/*
+		 * Nodes. We only keep the ids and the frames in memory.
+		 */
+
+		final int[] ids = GeffColumn.open( reader, "nodes/ids" ).readAllInts();
+		final int[] frames = GeffColumn.open( reader, GeffColumn.nodeProp( "t" ) ).readAllInts();
+		final GeffIdIndex index = GeffIdIndex.of( ids );
+		final int nNodes = ids.length;
+
+		/*
+		 * Edges. Read their end-points chunk by chunk, and find the tracks as
+		 * the connected components of the graph.
+		 */
+
+		final GeffColumn edgeIdColumn = GeffColumn.open( reader, "edges/ids" );
+		final int nEdges = edgeIdColumn == null ? 0 : ( int ) edgeIdColumn.size();
+		final int[] edgeSources = new int[ nEdges ];
+		final int[] edgeTargets = new int[ nEdges ];
+		for ( int chunk = 0; chunk < ( edgeIdColumn == null ? 0 : edgeIdColumn.numChunks() ); chunk++ )
+		{
+			final int[] data = edgeIdColumn.readIntChunk( chunk );
+			final int offset = chunk * edgeIdColumn.chunkSize();
+			for ( int i = 0; i < edgeIdColumn.rowsInChunk( chunk ); i++ )
+			{
+				final int source = index.rowOf( data[ 2 * i ] );
+				final int target = index.rowOf( data[ 2 * i + 1 ] );
+				edgeSources[ offset + i ] = source;
+				edgeTargets[ offset + i ] = target;
+			}
+		}
+
+		// Track ID of each node, -1 if it does not belong to a track.
+		final int[] trackOfNode = GeffComponents.label( nNodes, edgeSources, edgeTargets );
+		final int nTracks = GeffComponents.count( trackOfNode );
+
+		// Sort edges by track, keeping storage order within a track.
+		final int[] trackEdgeStarts = new int[ nTracks + 1 ];
+		for ( int e = 0; e < nEdges; e++ )
+			if ( edgeSources[ e ] >= 0 && edgeTargets[ e ] >= 0 )
+				trackEdgeStarts[ trackOfNode[ edgeSources[ e ] ] + 1 ]++;
+		for ( int t = 0; t < nTracks; t++ )
+			trackEdgeStarts[ t + 1 ] += trackEdgeStarts[ t ];
+		final int[] edgeOrder = new int[ trackEdgeStarts[ nTracks ] ];
+		final int[] fill = Arrays.copyOf( trackEdgeStarts, nTracks );
+		for ( int e = 0; e < nEdges; e++ )
+			if ( edgeSources[ e ] >= 0 && edgeTargets[ e ] >= 0 )
+				edgeOrder[ fill[ trackOfNode[ edgeSources[ e ] ] ]++ ] = e;
+
+		// Sort nodes by frame, then by row. Only the frames present are
+		// bucketed, and the rows of a frame are read in storage order.
+		final long[] frameRows = new long[ nNodes ];
+		for ( int row = 0; row < nNodes; row++ )
+			frameRows[ row ] = ( ( long ) frames[ row ] << 32 ) | row;
+		Arrays.sort( frameRows );
+
+		/*
+		 * Columns streamed while writing.
+		 */
+
+		final GeffColumn xColumn = GeffColumn.open( reader, GeffColumn.nodeProp( "x" ) );
+		final GeffColumn yColumn = GeffColumn.open( reader, GeffColumn.nodeProp( "y" ) );
+		final GeffColumn zColumn = GeffColumn.open( reader, GeffColumn.nodeProp( "z" ) );
+		final GeffColumn radiusColumn = GeffColumn.open( reader, GeffColumn.nodeProp( "radius" ) );
+		final Map< String, GeffColumn > spotFeatureColumns = TrackMateGeffReader.openFeatureColumns( reader, "nodes/props", GeffColumn.GEFF_NODE_PROPS, GeffToTmXmlConverter::isNotCoreSpotFeature, nNodes );
+		final Map< String, GeffColumn > edgeFeatureColumns = TrackMateGeffReader.openFeatureColumns( reader, "edges/props", GeffColumn.GEFF_EDGE_PROPS, name -> true, nEdges );
+
+		/*
+		 * Write.
+		 */
+
+		xml.writeStartDocument( "UTF-8", "1.0" );
+		xml.writeStartElement( ROOT_ELEMENT );
+		xml.writeAttribute( VERSION_ATTRIBUTE, TrackMate.PLUGIN_NAME_VERSION );
+		xml.writeStartElement( MODEL_ELEMENT );
+		xml.writeAttribute( SPATIAL_UNITS_ATTRIBUTE, spaceUnits );
+		xml.writeAttribute( TIME_UNITS_ATTRIBUTE, timeUnits );
+
+		// Feature declarations.
+		xml.writeStartElement( FEATURE_DECLARATIONS_ELEMENT );
+		writeFeatureDeclarations( "SpotFeatures", spotFeatureColumns, xml );
+		writeFeatureDeclarations( "EdgeFeatures", edgeFeatureColumns, xml );
+		writeFeatureDeclarations( "TrackFeatures", new LinkedHashMap<>(), xml );
+		xml.writeEndElement();
+
+		// Spots.
+		xml.writeStartElement( SPOT_COLLECTION_ELEMENT );
+		xml.writeAttribute( SPOT_COLLECTION_NSPOTS_ATTRIBUTE, Integer.toString( nNodes ) );
+		int start = 0;
+		while ( start < nNodes )
+		{
+			final int frame = ( int ) ( frameRows[ start ] >> 32 );
+			int end = start + 1;
+			while ( end < nNodes && ( int ) ( frameRows[ end ] >> 32 ) == frame )
+				end++;
+
+			xml.writeStartElement( SPOT_FRAME_COLLECTION_ELEMENT );
+			xml.writeAttribute( FRAME_ATTRIBUTE, Integer.toString( frame ) );
+			for ( int i = start; i < end; i++ )
+			{
+				final int row = ( int ) frameRows[ i ];
+				xml.writeEmptyElement( SPOT_ELEMENT );
+				xml.writeAttribute( SPOT_ID_ATTRIBUTE, Integer.toString( ids[ row ] ) );
+				xml.writeAttribute( SPOT_NAME_ATTRIBUTE, "ID" + ids[ row ] );
+				xml.writeAttribute( Spot.POSITION_X, Double.toString( xColumn.getDouble( row ) ) );
+				xml.writeAttribute( Spot.POSITION_Y, Double.toString( yColumn.getDouble( row ) ) );
+				xml.writeAttribute( Spot.POSITION_Z, Double.toString( zColumn == null ? 0. : zColumn.getDouble( row ) ) );
+				xml.writeAttribute( Spot.FRAME, Integer.toString( frame ) );
+				xml.writeAttribute( Spot.RADIUS, Double.toString( radiusColumn == null ? 1. : radiusColumn.getDouble( row ) ) );
+				if ( !spotFeatureColumns.containsKey( Spot.POSITION_T ) )
+					xml.writeAttribute( Spot.POSITION_T, Double.toString( frame ) );
+				if ( !spotFeatureColumns.containsKey( Spot.QUALITY ) )
+					xml.writeAttribute( Spot.QUALITY, Double.toString( DEFAULT_QUALITY ) );
+				// TmXmlReader hides the spots without visibility.
+				if ( !spotFeatureColumns.containsKey( SPOT_VISIBILITY_ATTRIBUTE ) )
+					xml.writeAttribute( SPOT_VISIBILITY_ATTRIBUTE, "1" );
+				writeFeatureValues( spotFeatureColumns, row, xml );
+			}
+			xml.writeEndElement();
+			start = end;
+		}
+		xml.writeEndElement();
+
+		// Tracks.
+		xml.writeStartElement( TRACK_COLLECTION_ELEMENT );
+		for ( int t = 0; t < nTracks; t++ )
+		{
+			xml.writeStartElement( TRACK_ELEMENT );
+			xml.writeAttribute( TRACK_NAME_ATTRIBUTE, "Track_" + t );
+			xml.writeAttribute( TRACK_ID_ATTRIBUTE, Integer.toString( t ) );
+			for ( int i = trackEdgeStarts[ t ]; i < trackEdgeStarts[ t + 1 ]; i++ )
+			{
+				final int e = edgeOrder[ i ];
+				xml.writeEmptyElement( EDGE_ELEMENT );
+				xml.writeAttribute( EDGE_SOURCE_ATTRIBUTE, Integer.toString( ids[ edgeSources[ e ] ] ) );
+				xml.writeAttribute( EDGE_TARGET_ATTRIBUTE, Integer.toString( ids[ edgeTargets[ e ] ] ) );
+				writeFeatureValues( edgeFeatureColumns, e, xml );
+			}
+			xml.writeEndElement();
+		}
+		xml.writeEndElement();
+
+		// All tracks are visible.
+		xml.writeStartElement( FILTERED_TRACKS_ELEMENT );
+		for ( int t = 0; t < nTracks; t++ )
+		{
+			xml.writeEmptyElement( TRACK_ID_ELEMENT );
+			xml.writeAttribute( TRACK_ID_ATTRIBUTE, Integer.toString( t ) );
+		}
+		xml.writeEndElement();
+
+		xml.writeEndElement(); // Model
+		xml.writeEndElement(); // TrackMate
+		xml.writeEndDocument();
+		xml.flush();
+	}
+
+	/**
+	 * Spot features written from the GEFF core properties.
+	 */
+	private static boolean isNotCoreSpotFeature( final String name )
+	{
+		return !name.equals( Spot.POSITION_X ) && !name.equals( Spot.POSITION_Y ) && !name.equals( Spot.POSITION_Z )
+				&& !name.equals( Spot.FRAME ) && !name.equals( Spot.RADIUS );
+	}
+
+	private static void writeFeatureDeclarations( final String type, final Map< String, GeffColumn > columns, final XMLStreamWriter xml ) throws XMLStreamException
+	{
+		xml.writeStartElement( type );
+		for ( final String feature : columns.keySet() )
+		{
+			xml.writeEmptyElement( FEATURE_ELEMENT );
+			xml.writeAttribute( "feature", feature );
+			xml.writeAttribute( "name", feature );
+			xml.writeAttribute( "shortname", feature );
+			xml.writeAttribute( "dimension", "NONE" );
+			xml.writeAttribute( "isint", Boolean.toString( columns.get( feature ).isInt() ) );
+		}
+		xml.writeEndElement();
+	}
+
+	/**
+	 * Writes the feature values of one row as attributes of the current
+	 * element. Missing values (<code>NaN</code> or {@link Integer#MIN_VALUE}
+	 * as written by {@link TrackMateGeffWriter}) are skipped.
+	 */
+	private static void writeFeatureValues( final Map< String, GeffColumn > columns, final int row, final XMLStreamWriter xml ) throws XMLStreamException
+	{
+		for ( final Map.Entry< String, GeffColumn > entry : columns.entrySet() )
+		{
+			final GeffColumn column = entry.getValue();
+			if ( column.isInt() )
+			{
+				final int val = column.getInt( row );
+				if ( val != Integer.MIN_VALUE )
+					xml.writeAttribute( entry.getKey(), Integer.toString( val ) );
+			}
+			else
+			{
+				final double val = column.getDouble( row );
+				if ( !Double.isNaN( val ) )
+					xml.writeAttribute( entry.getKey(), Double.toString( val ) );
+			}
+		}
+	}
+}
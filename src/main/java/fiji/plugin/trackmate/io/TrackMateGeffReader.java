@@ -1,16 +1,21 @@
 package fiji.plugin.trackmate.io;
 
-import static fiji.plugin.trackmate.io.TrackMateGeffWriter.GEFF_PREFIX;
 import static fiji.plugin.trackmate.io.TrackMateGeffWriter.GEFF_VERSION;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
+import org.janelia.saalfeldlab.n5.N5Reader;
 import org.jgrapht.alg.connectivity.ConnectivityInspector;
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.jgrapht.graph.SimpleWeightedGraph;
@@ -19,10 +24,13 @@ import org.mastodon.geff.GeffEdge;
 import org.mastodon.geff.GeffMetadata;
 import org.mastodon.geff.GeffNode;
 
+import fiji.plugin.trackmate.Dimension;
+import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.SpotRoi;
+import fiji.plugin.trackmate.io.GeffMemoryEstimate.Strategy;
 
 public class TrackMateGeffReader
 {
@@ -33,32 +41,347 @@ public class TrackMateGeffReader
 	}
 
 	public static Model readModel( final String zarrPath, final Model model ) throws IOException
+	{
+		return readModel( zarrPath, model, GeffFeatureSelection.all() );
+	}
+
+	/**
+	 * Reads a GEFF file into a TrackMate model, reading only the selected
+	 * features. The feature columns that are not selected are never read.
+	 * <p>
+	 * The heap needed is estimated first from the array shapes with
+	 * {@link GeffMemoryEstimate}. If the GEFF library path does not fit, the
+	 * spots and edges are created directly from the columns, and if that does
+	 * not fit either an {@link IOException} is thrown before reading the
+	 * nodes.
+	 * <p>
+	 * The Zarr file can also be in an object store, given by its URI, e.g.
+	 * <code>s3://bucket/data.zarr</code>. Its chunks are then fetched
+	 * concurrently, and only through the column path, see {@link GeffStore}.
+	 *
+	 * @param zarrPath
+	 *            the path or URI of the Zarr file.
+	 * @param model
+	 *            the model to read into.
+	 * @param selection
+	 *            the spot and edge features to read.
+	 * @return the model.
+	 * @throws IOException
+	 */
+	public static Model readModel( final String zarrPath, final Model model, final GeffFeatureSelection selection ) throws IOException
 	{
 		// Geff is a subfolder of the Zarr file.
-		final String inputZarrPath = zarrPath.endsWith( "/" ) ? zarrPath + GEFF_PREFIX : zarrPath + "/" + GEFF_PREFIX;
+		return readGroup( GeffIOUtils.geffPath( zarrPath ), model, selection );
+	}
+
+	/**
+	 * Reads a named GEFF group of a Zarr store holding several of them, like
+	 * the ones written by
+	 * {@link TrackMateGeffWriter#exportAll(Map, String, boolean, int)}.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param group
+	 *            the name of the GEFF group.
+	 * @param model
+	 *            the model to read into.
+	 * @param selection
+	 *            the spot and edge features to read.
+	 * @return the model.
+	 * @throws IOException
+	 */
+	public static Model readModel( final String zarrPath, final String group, final Model model, final GeffFeatureSelection selection ) throws IOException
+	{
+		return readGroup( GeffIOUtils.geffPath( zarrPath, group ), model, selection );
+	}
 
+	/**
+	 * Returns the names of the GEFF groups listed in the root attributes of a
+	 * Zarr store by
+	 * {@link TrackMateGeffWriter#exportAll(Map, String, boolean, int)}.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @return the group names, sorted. Empty if the store does not list any.
+	 * @throws IOException
+	 */
+	public static List< String > listGroups( final String zarrPath ) throws IOException
+	{
+		try (final N5Reader reader = GeffStore.openReader( zarrPath ))
+		{
+			final String[] groups = reader.getAttribute( "/", TrackMateGeffWriter.GEFF_GROUPS_KEY, String[].class );
+			return groups == null ? Collections.emptyList() : Arrays.asList( groups );
+		}
+	}
+
+	/**
+	 * Reads a GEFF group opened with a reader, for instance on an object store
+	 * configured by the caller. Only the column path is used: the spots and
+	 * edges are created from the columns, and polygons are not read.
+	 *
+	 * @param reader
+	 *            the reader, opened on the GEFF group.
+	 * @param model
+	 *            the model to read into.
+	 * @param selection
+	 *            the spot and edge features to read.
+	 * @return the model.
+	 * @throws IOException
+	 * @see GeffStore
+	 */
+	public static Model readModel( final N5Reader reader, final Model model, final GeffFeatureSelection selection ) throws IOException
+	{
+		return readGroup( reader, null, model, selection );
+	}
+
+	private static Model readGroup( final String inputZarrPath, final Model model, final GeffFeatureSelection selection ) throws IOException
+	{
+		try (final N5Reader reader = GeffStore.openReader( inputZarrPath ))
+		{
+			return readGroup( reader, GeffStore.isRemote( inputZarrPath ) ? null : inputZarrPath, model, selection );
+		}
+	}
+
+	/**
+	 * Reads a GEFF group.
+	 *
+	 * @param localPath
+	 *            the path of the GEFF group, for the GEFF library, or
+	 *            <code>null</code> if the group can only be accessed through
+	 *            the reader.
+	 */
+	private static Model readGroup( final N5Reader reader, final String localPath, final Model model, final GeffFeatureSelection selection ) throws IOException
+	{
 		// Read the metadata.
-		final GeffMetadata metadata = GeffMetadata.readFromZarr( inputZarrPath );
+		final GeffMetadata metadata = localPath == null ? GeffStore.readMetadata( reader ) : GeffMetadata.readFromZarr( localPath );
 		final int xAxis = findSpatialAxis( metadata.getGeffAxes() );
 		final String spaceUnits = metadata.getGeffAxes()[ xAxis ].getUnit();
 		final int tAxis = findTemporalAxis( metadata.getGeffAxes() );
 		final String timeUnits = metadata.getGeffAxes()[ tAxis ].getUnit();
 		model.setPhysicalUnits( spaceUnits, timeUnits );
 
-		// Read the nodes (spots).
-		final List< GeffNode > nodes = GeffNode.readFromZarr( inputZarrPath, GEFF_VERSION );
-		final SpotCollection spots = toSpotCollection( nodes );
-		model.setSpots( spots, false );
+		// Check that the model will fit in memory before reading it.
+		final GeffMemoryEstimate estimate = GeffMemoryEstimate.forImport( reader, localPath == null ? reader.getURI().toString() : localPath, selection );
+		final Strategy strategy;
+		if ( localPath == null || !GeffColumn.isLibraryCore( reader ) )
+		{
+			// Remote stores and encoded core columns are only read as columns.
+			estimate.checkColumns();
+			strategy = Strategy.COLUMNS;
+		}
+		else
+		{
+			strategy = estimate.select();
+		}
+
+		final Spot[] spotRows;
+		final DefaultWeightedEdge[] edgeRows;
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph;
+		if ( strategy == Strategy.OBJECTS )
+		{
+			// Read the nodes (spots).
+			final List< GeffNode > nodes = GeffNode.readFromZarr( localPath, GEFF_VERSION );
+			spotRows = new Spot[ nodes.size() ];
+			final SpotCollection spots = toSpotCollection( nodes, spotRows );
+			model.setSpots( spots, false );
 
-		// Read the edges.
-		final List< GeffEdge > geffEdges = GeffEdge.readFromZarr( inputZarrPath, GEFF_VERSION );
-		System.out.println( geffEdges.size() + " edges found." );
-		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = toGraph( geffEdges, spots );
+			// Read the edges.
+			final List< GeffEdge > geffEdges = GeffEdge.readFromZarr( localPath, GEFF_VERSION );
+			System.out.println( geffEdges.size() + " edges found." );
+			edgeRows = new DefaultWeightedEdge[ geffEdges.size() ];
+			graph = toGraph( geffEdges, spots, edgeRows );
+		}
+		else
+		{
+			// Low-memory path: spots and edges are created from the columns.
+			spotRows = readSpotRows( reader );
+			model.setSpots( toSpotCollection( spotRows ), false );
+			final GeffColumn edgeIds = GeffColumn.open( reader, "edges/ids" );
+			edgeRows = new DefaultWeightedEdge[ edgeIds == null ? 0 : ( int ) edgeIds.size() ];
+			graph = toGraph( reader, spotRows, edgeRows );
+		}
 		setTrackModel( model, graph );
 
+		// Read the selected features.
+		readSpotFeatures( reader, spotRows, model.getFeatureModel(), selection );
+		readEdgeFeatures( reader, edgeRows, model.getFeatureModel(), selection );
 		return model;
 	}
 
+	private static void readSpotFeatures( final N5Reader reader, final Spot[] spotRows, final FeatureModel featureModel, final GeffFeatureSelection selection ) throws IOException
+	{
+		final Map< String, GeffColumn > columns = openFeatureColumns( reader, "nodes/props", GeffColumn.GEFF_NODE_PROPS, selection::isSpotFeatureSelected, spotRows.length );
+		declareFeatures( columns, featureModel.getSpotFeatures(), featureModel::declareSpotFeatures );
+		final boolean remote = GeffStore.isRemote( reader );
+		final int window = GeffStore.getMaxInFlight();
+		for ( final Map.Entry< String, GeffColumn > entry : columns.entrySet() )
+		{
+			final String key = entry.getKey();
+			final GeffColumn column = entry.getValue();
+			for ( int chunk = 0; chunk < column.numChunks(); chunk++ )
+			{
+				if ( remote && chunk % window == 0 )
+					GeffColumn.prefetch( Collections.singletonList( column ), ( long ) chunk * column.chunkSize(), ( long ) ( chunk + window ) * column.chunkSize(), true );
+				final double[] values = column.readDoubleChunk( chunk );
+				final int offset = chunk * column.chunkSize();
+				for ( int i = 0; i < column.rowsInChunk( chunk ); i++ )
+				{
+					final double val = values[ i ];
+					if ( isMissing( val, column ) )
+						continue;
+					spotRows[ offset + i ].putFeature( key, val );
+				}
+			}
+		}
+	}
+
+	private static void readEdgeFeatures( final N5Reader reader, final DefaultWeightedEdge[] edgeRows, final FeatureModel featureModel, final GeffFeatureSelection selection ) throws IOException
+	{
+		final Map< String, GeffColumn > columns = openFeatureColumns( reader, "edges/props", GeffColumn.GEFF_EDGE_PROPS, selection::isEdgeFeatureSelected, edgeRows.length );
+		declareFeatures( columns, featureModel.getEdgeFeatures(), featureModel::declareEdgeFeatures );
+		final boolean remote = GeffStore.isRemote( reader );
+		final int window = GeffStore.getMaxInFlight();
+		for ( final Map.Entry< String, GeffColumn > entry : columns.entrySet() )
+		{
+			final String key = entry.getKey();
+			final GeffColumn column = entry.getValue();
+			for ( int chunk = 0; chunk < column.numChunks(); chunk++ )
+			{
+				if ( remote && chunk % window == 0 )
+					GeffColumn.prefetch( Collections.singletonList( column ), ( long ) chunk * column.chunkSize(), ( long ) ( chunk + window ) * column.chunkSize(), true );
+				final double[] values = column.readDoubleChunk( chunk );
+				final int offset = chunk * column.chunkSize();
+				for ( int i = 0; i < column.rowsInChunk( chunk ); i++ )
+				{
+					final DefaultWeightedEdge edge = edgeRows[ offset + i ];
+					final double val = values[ i ];
+					if ( edge == null || isMissing( val, column ) )
+						continue;
+					featureModel.putEdgeFeature( edge, key, val );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens the selected feature columns of a property group. GEFF core
+	 * properties and 2D columns are skipped.
+	 *
+	 * @param rows
+	 *            the number of nodes or edges.
+	 * @throws IOException
+	 *             if a selected column does not have the expected number of
+	 *             rows, e.g. left over by an export of a larger model with
+	 *             another writer.
+	 */
+	static Map< String, GeffColumn > openFeatureColumns( final N5Reader reader, final String propsGroup, final Set< String > excluded, final Predicate< String > selected, final long rows ) throws IOException
+	{
+		final Map< String, GeffColumn > columns = new LinkedHashMap<>();
+		if ( !reader.exists( propsGroup ) )
+			return columns;
+
+		for ( final String name : reader.list( propsGroup ) )
+		{
+			if ( excluded.contains( name ) || !selected.test( name ) )
+				continue;
+
+			final GeffColumn column = GeffColumn.open( reader, propsGroup + "/" + name + "/values" );
+			if ( column == null || column.width() != 1 )
+				continue;
+			if ( column.size() != rows )
+				throw new IOException( "The feature column " + propsGroup + "/" + name + " has " + column.size() + " rows instead of " + rows + "." );
+			columns.put( name, column );
+		}
+		return columns;
+	}
+
+	/**
+	 * Declares the features of the columns that are not known to the feature
+	 * model yet. Their declarations are not stored in the GEFF file, so we use
+	 * the key as name and no dimension.
+	 */
+	private static void declareFeatures( final Map< String, GeffColumn > columns, final Collection< String > declared, final FeatureDeclarer declarer )
+	{
+		final List< String > features = new ArrayList<>();
+		final Map< String, String > names = new HashMap<>();
+		final Map< String, Dimension > dimensions = new HashMap<>();
+		final Map< String, Boolean > isInts = new HashMap<>();
+		for ( final Map.Entry< String, GeffColumn > entry : columns.entrySet() )
+		{
+			final String key = entry.getKey();
+			if ( declared.contains( key ) )
+				continue;
+			features.add( key );
+			names.put( key, key );
+			dimensions.put( key, Dimension.NONE );
+			isInts.put( key, entry.getValue().isInt() );
+		}
+		if ( !features.isEmpty() )
+			declarer.declare( features, names, names, dimensions, isInts );
+	}
+
+	/**
+	 * Missing values are written as <code>NaN</code> for double features and
+	 * {@link Integer#MIN_VALUE} for integer features.
+	 */
+	private static boolean isMissing( final double val, final GeffColumn column )
+	{
+		return column.isInt() ? val == Integer.MIN_VALUE : Double.isNaN( val );
+	}
+
+	@FunctionalInterface
+	private static interface FeatureDeclarer
+	{
+		void declare( Collection< String > features, Map< String, String > names, Map< String, String > shortNames, Map< String, Dimension > dimensions, Map< String, Boolean > isInts );
+	}
+
+	/**
+	 * Opens the spatial index written in a GEFF file by an export with
+	 * {@link GeffIndexes#spatial(double)}. Queries on the index only read the
+	 * node chunks they need, without loading the model.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @return the spatial index, to be closed after use.
+	 * @throws IOException
+	 *             if the GEFF file has no spatial index.
+	 */
+	public static GeffSpatialIndex openSpatialIndex( final String zarrPath ) throws IOException
+	{
+		return GeffSpatialIndex.open( zarrPath );
+	}
+
+	/**
+	 * Loads the lineage arrays written in a GEFF file by an export with
+	 * {@link GeffIndexes#lineage()}. Lineage queries are answered on
+	 * primitive arrays, without building a graph.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @return the lineage.
+	 * @throws IOException
+	 *             if the GEFF file has no lineage arrays.
+	 */
+	public static GeffLineage openLineage( final String zarrPath ) throws IOException
+	{
+		return GeffLineage.open( zarrPath );
+	}
+
+	/**
+	 * Opens a GEFF file as a read-only table of primitive columns, for batch
+	 * statistics that do not need a TrackMate model.
+	 *
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @return the table, to be closed after use.
+	 * @throws IOException
+	 *             if the GEFF file has no node columns.
+	 */
+	public static GeffTable openTable( final String zarrPath ) throws IOException
+	{
+		return GeffTable.open( zarrPath );
+	}
+
 	private static void setTrackModel( final Model model, final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph )
 	{
 		final ConnectivityInspector< Spot, DefaultWeightedEdge > inspector = new ConnectivityInspector<>( graph );
@@ -96,7 +419,7 @@ public class TrackMateGeffReader
 		model.getTrackModel().from( graph, trackSpotsMap, trackEdgesMap, trackVisibility, trackNames );
 	}
 
-	private static SimpleWeightedGraph< Spot, DefaultWeightedEdge > toGraph( final List< GeffEdge > geffEdges, final SpotCollection spots )
+	private static SimpleWeightedGraph< Spot, DefaultWeightedEdge > toGraph( final List< GeffEdge > geffEdges, final SpotCollection spots, final DefaultWeightedEdge[] edgeRows )
 	{
 		// Map id -> spot.
 		final Map< Integer, Spot > spotMap = new HashMap<>();
@@ -104,8 +427,9 @@ public class TrackMateGeffReader
 			spotMap.put( spot.ID(), spot );
 
 		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
-		for ( final GeffEdge geffEdge : geffEdges )
+		for ( int row = 0; row < geffEdges.size(); row++ )
 		{
+			final GeffEdge geffEdge = geffEdges.get( row );
 			final int sourceId = geffEdge.getSourceNodeId();
 			final int targetId = geffEdge.getTargetNodeId();
 			final Spot sourceSpot = spotMap.get( sourceId );
@@ -119,16 +443,120 @@ public class TrackMateGeffReader
 				graph.addVertex( targetSpot );
 				final DefaultWeightedEdge edge = graph.addEdge( sourceSpot, targetSpot );
 				graph.setEdgeWeight( edge, weight );
+				edgeRows[ row ] = edge;
 			}
 		}
 		return graph;
 	}
 
-	private static SpotCollection toSpotCollection( final List< GeffNode > nodes )
+	/**
+	 * Creates the spots from the node columns, without going through
+	 * {@link GeffNode} objects. Polygons are not read.
+	 */
+	private static Spot[] readSpotRows( final N5Reader reader )
+	{
+		final GeffColumn ids = GeffColumn.open( reader, "nodes/ids" );
+		final GeffColumn ts = GeffColumn.open( reader, GeffColumn.nodeProp( "t" ) );
+		final GeffColumn xs = GeffColumn.open( reader, GeffColumn.nodeProp( "x" ) );
+		final GeffColumn ys = GeffColumn.open( reader, GeffColumn.nodeProp( "y" ) );
+		final GeffColumn zs = GeffColumn.open( reader, GeffColumn.nodeProp( "z" ) );
+		final GeffColumn radii = GeffColumn.open( reader, GeffColumn.nodeProp( "radius" ) );
+		final List< GeffColumn > columns = nonNull( ids, ts, xs, ys, zs, radii );
+		final boolean remote = GeffStore.isRemote( reader );
+		final long window = prefetchWindow( ids );
+		final Spot[] spotRows = new Spot[ ( int ) ids.size() ];
+		for ( int row = 0; row < spotRows.length; row++ )
+		{
+			if ( remote && row % window == 0 )
+				GeffColumn.prefetch( columns, row, row + window, false );
+			final Spot spot = new Spot( ids.getInt( row ) );
+			spot.putFeature( Spot.POSITION_X, xs == null ? 0. : xs.getDouble( row ) );
+			spot.putFeature( Spot.POSITION_Y, ys == null ? 0. : ys.getDouble( row ) );
+			spot.putFeature( Spot.POSITION_Z, zs == null ? 0. : zs.getDouble( row ) );
+			spot.putFeature( Spot.FRAME, ( double ) ts.getInt( row ) );
+			spot.putFeature( Spot.RADIUS, radii == null ? 1. : radii.getDouble( row ) );
+			spotRows[ row ] = spot;
+		}
+		return spotRows;
+	}
+
+	/**
+	 * Returns the number of rows of a column scanned between two prefetches,
+	 * when reading from an object store: one chunk per concurrent request.
+	 */
+	private static long prefetchWindow( final GeffColumn column )
+	{
+		return ( long ) column.chunkSize() * GeffStore.getMaxInFlight();
+	}
+
+	private static List< GeffColumn > nonNull( final GeffColumn... columns )
+	{
+		final List< GeffColumn > list = new ArrayList<>( columns.length );
+		for ( final GeffColumn column : columns )
+			if ( column != null )
+				list.add( column );
+		return list;
+	}
+
+	private static SpotCollection toSpotCollection( final Spot[] spotRows )
+	{
+		final Map< Integer, List< Spot > > spotMap = new HashMap<>();
+		for ( final Spot spot : spotRows )
+			spotMap.computeIfAbsent( spot.getFeature( Spot.FRAME ).intValue(), k -> new ArrayList<>() ).add( spot );
+
+		final SpotCollection spots = new SpotCollection();
+		for ( final Integer key : spotMap.keySet() )
+			spots.put( key, spotMap.get( key ) );
+		return spots;
+	}
+
+	/**
+	 * Creates the graph from the edge columns, without going through
+	 * {@link GeffEdge} objects.
+	 */
+	private static SimpleWeightedGraph< Spot, DefaultWeightedEdge > toGraph( final N5Reader reader, final Spot[] spotRows, final DefaultWeightedEdge[] edgeRows )
+	{
+		final int[] ids = new int[ spotRows.length ];
+		for ( int row = 0; row < ids.length; row++ )
+			ids[ row ] = spotRows[ row ].ID();
+		final GeffIdIndex index = GeffIdIndex.of( ids );
+
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+		final GeffColumn edgeIds = GeffColumn.open( reader, "edges/ids" );
+		if ( edgeIds == null )
+			return graph;
+
+		final GeffColumn distances = GeffColumn.open( reader, GeffColumn.edgeProp( "distance" ) );
+		final List< GeffColumn > columns = nonNull( edgeIds, distances );
+		final boolean remote = GeffStore.isRemote( reader );
+		final long window = prefetchWindow( edgeIds );
+		for ( int row = 0; row < edgeRows.length; row++ )
+		{
+			if ( remote && row % window == 0 )
+				GeffColumn.prefetch( columns, row, row + window, false );
+			final int source = index.rowOf( edgeIds.getInt( row, 0 ) );
+			final int target = index.rowOf( edgeIds.getInt( row, 1 ) );
+			if ( source < 0 || target < 0 )
+				continue;
+
+			final Spot sourceSpot = spotRows[ source ];
+			final Spot targetSpot = spotRows[ target ];
+			final double d = distances == null ? 0. : distances.getDouble( row );
+			graph.addVertex( sourceSpot );
+			graph.addVertex( targetSpot );
+			final DefaultWeightedEdge edge = graph.addEdge( sourceSpot, targetSpot );
+			graph.setEdgeWeight( edge, d * d );
+			edgeRows[ row ] = edge;
+		}
+		return graph;
+	}
+
+	private static SpotCollection toSpotCollection( final List< GeffNode > nodes, final Spot[] spotRows )
 	{
 		final Map< Integer, List< Spot > > spotMap = new HashMap<>();
-		for ( final GeffNode node : nodes )
+		for ( int row = 0; row < nodes.size(); row++ )
 		{
+			final GeffNode node = nodes.get( row );
 			final int id = node.getId();
 			final double x = node.getX();
 			final double y = node.getY();
@@ -156,6 +584,7 @@ public class TrackMateGeffReader
 			}
 
 			spotMap.computeIfAbsent( tp, k -> new ArrayList<>() ).add( spot );
+			spotRows[ row ] = spot;
 		}
 
 		final SpotCollection spots = new SpotCollection();
@@ -168,7 +597,7 @@ public class TrackMateGeffReader
 		return spots;
 	}
 
-	private static int findTemporalAxis( final GeffAxis[] axes )
+	static int findTemporalAxis( final GeffAxis[] axes )
 	{
 		for ( int d = 0; d < axes.length; d++ )
 		{
@@ -179,7 +608,7 @@ public class TrackMateGeffReader
 		return -1;
 	}
 
-	private static int findSpatialAxis( final GeffAxis[] axes )
+	static int findSpatialAxis( final GeffAxis[] axes )
 	{
 		for ( int d = 0; d < axes.length; d++ )
 		{
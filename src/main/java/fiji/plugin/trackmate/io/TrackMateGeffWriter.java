@@ -23,21 +23,32 @@ package fiji.plugin.trackmate.io;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.ToDoubleFunction;
-import java.util.function.ToIntFunction;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.io.FileUtils;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.mastodon.geff.GeffAxis;
-import org.mastodon.geff.GeffEdge;
 import org.mastodon.geff.GeffMetadata;
 import org.mastodon.geff.GeffNode;
 import org.mastodon.geff.GeffNode.Builder;
@@ -50,6 +61,7 @@ import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotRoi;
 import fiji.plugin.trackmate.TrackModel;
 import fiji.plugin.trackmate.features.manual.ManualSpotColorAnalyzerFactory;
+import fiji.plugin.trackmate.io.GeffMemoryEstimate.Strategy;
 
 /**
  * Exports a TrackMate model to a GEFF format.
@@ -61,27 +73,429 @@ public class TrackMateGeffWriter
 
 	public static final String GEFF_PREFIX = "trackmate.geff";
 
+	/**
+	 * Key of the root attribute of a Zarr store listing the GEFF groups written
+	 * by {@link #exportAll(Map, String, boolean, int)}.
+	 */
+	public static final String GEFF_GROUPS_KEY = "trackmate_geff_groups";
+
+	private static final Object GEFF_GROUPS_LOCK = new Object();
+
+	/** Default order of the node rows: by frame, then by ID. */
+	private static final Comparator< Spot > SPOT_ORDER = Comparator
+			.comparingInt( ( final Spot spot ) -> spot.getFeature( Spot.FRAME ).intValue() )
+			.thenComparingInt( Spot::ID );
+
 	public static void export( final Model model, final String zarrPath ) throws IOException
 	{
 		export( model, zarrPath, false );
 	}
 
 	public static void export( final Model model, final String zarrPath, final boolean is2d ) throws IOException
+	{
+		export( model, zarrPath, is2d, GeffFeatureSelection.all() );
+	}
+
+	/**
+	 * Exports a TrackMate model to a GEFF file, writing only the selected
+	 * features.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @throws IOException
+	 */
+	public static void export( final Model model, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection ) throws IOException
+	{
+		export( model, zarrPath, is2d, selection, GeffExportFilter.all() );
+	}
+
+	/**
+	 * Exports part of a TrackMate model to a GEFF file. The spots and edges
+	 * are filtered during the export scan, without copying the model.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param filter
+	 *            the spots and edges to write.
+	 * @throws IOException
+	 */
+	public static void export( final Model model, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter ) throws IOException
+	{
+		export( model, zarrPath, is2d, selection, filter, GeffEncoding.none() );
+	}
+
+	/**
+	 * Exports part of a TrackMate model to a GEFF file, storing the feature
+	 * columns with the specified encoding.
+	 * <p>
+	 * The heap needed is estimated first with {@link GeffMemoryEstimate}. If
+	 * the GEFF library path does not fit, the columns are written directly
+	 * from primitive arrays, and if that does not fit either the export fails
+	 * before writing anything.
+	 * <p>
+	 * The Zarr file can also be in an object store, given by its URI, e.g.
+	 * <code>s3://bucket/data.zarr</code>. Its chunks are then uploaded
+	 * concurrently, and only through the column path, see {@link GeffStore}.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path or URI of the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param filter
+	 *            the spots and edges to write.
+	 * @param encoding
+	 *            the storage encoding of the feature columns.
+	 * @throws IOException
+	 */
+	public static void export( final Model model, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding ) throws IOException
+	{
+		export( model, zarrPath, is2d, selection, filter, encoding, GeffIndexes.none() );
+	}
+
+	/**
+	 * Exports part of a TrackMate model to a GEFF file, and writes the
+	 * specified indexes next to its columns. The indexes are built from the
+	 * arrays of the export scan, without reading the columns back.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path or URI of the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param filter
+	 *            the spots and edges to write.
+	 * @param encoding
+	 *            the storage encoding of the feature columns.
+	 * @param indexes
+	 *            the indexes to write.
+	 * @throws IOException
+	 * @see #export(Model, String, boolean, GeffFeatureSelection,
+	 *      GeffExportFilter, GeffEncoding)
+	 */
+	public static void export( final Model model, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding, final GeffIndexes indexes ) throws IOException
 	{
 		// Geff is a subfolder of the Zarr file.
-		final String outputZarrPath = zarrPath.endsWith( "/" ) ? zarrPath + GEFF_PREFIX : zarrPath + "/" + GEFF_PREFIX;
+		exportGroup( model, GeffIOUtils.geffPath( zarrPath ), is2d, selection, filter, encoding, indexes );
+	}
 
-		// Serialize spots.
-		final FeatureModel featureModel = model.getFeatureModel();
-		serializeSpots( model.getSpots().iterable( true ), featureModel, model.getTrackModel(), outputZarrPath, is2d );
+	/**
+	 * Exports part of a TrackMate model to a GEFF group opened with a writer,
+	 * for instance on an object store configured by the caller. Only the
+	 * column path is used, so spots with polygons cannot be exported this
+	 * way.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param writer
+	 *            the writer, opened on the GEFF group.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param filter
+	 *            the spots and edges to write.
+	 * @param encoding
+	 *            the storage encoding of the feature columns.
+	 * @throws IOException
+	 *             if some spots have polygons, or if the export does not fit
+	 *             in memory.
+	 * @see GeffStore
+	 */
+	public static void export( final Model model, final N5Writer writer, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding ) throws IOException
+	{
+		export( model, writer, is2d, selection, filter, encoding, GeffIndexes.none() );
+	}
+
+	/**
+	 * Exports part of a TrackMate model to a GEFF group opened with a writer,
+	 * and writes the specified indexes next to its columns.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param writer
+	 *            the writer, opened on the GEFF group.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param filter
+	 *            the spots and edges to write.
+	 * @param encoding
+	 *            the storage encoding of the feature columns.
+	 * @param indexes
+	 *            the indexes to write.
+	 * @throws IOException
+	 *             if some spots have polygons, or if the export does not fit
+	 *             in memory.
+	 * @see #export(Model, N5Writer, boolean, GeffFeatureSelection,
+	 *      GeffExportFilter, GeffEncoding)
+	 */
+	public static void export( final Model model, final N5Writer writer, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding, final GeffIndexes indexes ) throws IOException
+	{
+		checkColumnExport( model, selection, writer );
+		exportGroup( model, writer, "", is2d, selection, filter, encoding, indexes );
+	}
+
+	/**
+	 * Exports several models concurrently, each in its own named GEFF group
+	 * of the same Zarr store.
+	 *
+	 * @param models
+	 *            the models to export, mapped to the name of their GEFF group.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the models are 2D.
+	 * @param numThreads
+	 *            the maximal number of models exported at the same time.
+	 * @throws IOException
+	 * @see #exportAll(Map, String, boolean, GeffFeatureSelection,
+	 *      GeffEncoding, int)
+	 */
+	public static void exportAll( final Map< String, Model > models, final String zarrPath, final boolean is2d, final int numThreads ) throws IOException
+	{
+		exportAll( models, zarrPath, is2d, GeffFeatureSelection.all(), GeffEncoding.none(), numThreads );
+	}
+
+	/**
+	 * Exports several models concurrently, each in its own named GEFF group
+	 * of the same Zarr store, e.g. one group per well or per position.
+	 * <p>
+	 * The heap needed by each model is estimated first, against a single
+	 * measure of the available heap, and nothing is written if a model does
+	 * not fit. The store and the groups are then created, and the models are
+	 * exported by a bounded pool of threads, each writing only inside its own
+	 * group. The exports running at the same time are also bounded so that
+	 * the sum of their estimates fits in the heap. Remote stores are written
+	 * through the column path only, and all the threads share the store
+	 * writer. The
+	 * names of the groups exported successfully are then added to the
+	 * {@value #GEFF_GROUPS_KEY} attribute of the store root, from the calling
+	 * thread. If some exports fail, the others still complete, and the first
+	 * failure is thrown with the next ones as suppressed exceptions.
+	 *
+	 * @param models
+	 *            the models to export, mapped to the name of their GEFF group.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the models are 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param encoding
+	 *            the storage encoding of the feature columns.
+	 * @param numThreads
+	 *            the maximal number of models exported at the same time.
+	 * @throws IOException
+	 */
+	public static void exportAll( final Map< String, Model > models, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection, final GeffEncoding encoding, final int numThreads ) throws IOException
+	{
+		// Validate all the names before writing anything.
+		final Map< String, String > groupPaths = new LinkedHashMap<>();
+		for ( final String group : models.keySet() )
+			groupPaths.put( group, GeffIOUtils.geffPath( zarrPath, group ) );
+
+		// Estimate all the models before writing anything: the exports running
+		// at the same time share the heap.
+		final boolean remote = GeffStore.isRemote( zarrPath );
+		final int nThreads = Math.max( 1, Math.min( numThreads, models.size() ) );
+		final List< GeffMemoryEstimate > estimates = new ArrayList<>();
+		for ( final String group : groupPaths.keySet() )
+		{
+			final GeffMemoryEstimate estimate = GeffMemoryEstimate.forExport( models.get( group ), selection );
+			if ( remote && !estimate.isColumnPathAvailable() )
+				throw new IOException( "Spots with polygons can only be exported to a local GEFF file, not to " + zarrPath );
+			estimates.add( estimate );
+		}
+		final Strategy[] strategies = GeffMemoryEstimate.selectAll( estimates, nThreads, remote || encoding.isCompactCore() );
+		final int budget = toMegabytes( GeffMemoryEstimate.usableHeap() );
+		final Semaphore heap = new Semaphore( budget, true );
+
+		try (final N5Writer store = GeffStore.openWriter( zarrPath ))
+		{
+			for ( final String group : groupPaths.keySet() )
+				store.createGroup( group );
+
+			final ExecutorService executors = Executors.newFixedThreadPool( nThreads );
+			final Map< String, Future< ? > > futures = new LinkedHashMap<>();
+			int i = 0;
+			for ( final String group : groupPaths.keySet() )
+			{
+				final Model model = models.get( group );
+				final String outputZarrPath = groupPaths.get( group );
+				final Strategy strategy = strategies[ i ];
+				final int permits = Math.min( budget, toMegabytes( estimates.get( i ).getBytes( strategy ) ) );
+				i++;
+				futures.put( group, executors.submit( () -> {
+					heap.acquire( permits );
+					try
+					{
+						if ( remote )
+							exportGroup( model, store, group, is2d, selection, GeffExportFilter.all(), encoding, GeffIndexes.none() );
+						else
+							exportGroup( model, outputZarrPath, strategy, is2d, selection, GeffExportFilter.all(), encoding, GeffIndexes.none() );
+					}
+					finally
+					{
+						heap.release( permits );
+					}
+					return null;
+				} ) );
+			}
+			executors.shutdown();
+
+			final List< String > exported = new ArrayList<>();
+			IOException error = null;
+			for ( final Map.Entry< String, Future< ? > > entry : futures.entrySet() )
+			{
+				try
+				{
+					entry.getValue().get();
+					exported.add( entry.getKey() );
+				}
+				catch ( final ExecutionException e )
+				{
+					final IOException ioe = new IOException( "Could not export the GEFF group " + entry.getKey(), e.getCause() );
+					if ( error == null )
+						error = ioe;
+					else
+						error.addSuppressed( ioe );
+				}
+				catch ( final InterruptedException e )
+				{
+					executors.shutdownNow();
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException( "Interrupted while exporting GEFF groups to " + zarrPath );
+				}
+			}
 
-		// Serialize edges.
+			addGeffGroups( store, exported );
+			if ( error != null )
+				throw error;
+		}
+	}
+
+	/**
+	 * Converts a heap size to semaphore permits, in MB.
+	 */
+	private static int toMegabytes( final long bytes )
+	{
+		return ( int ) Math.min( Integer.MAX_VALUE, ( bytes + ( 1 << 20 ) - 1 ) >> 20 );
+	}
+
+	/**
+	 * Adds names to the list of GEFF groups stored in the root attributes of a
+	 * Zarr store. The read-modify-write is serialized, so that concurrent
+	 * calls do not lose names.
+	 */
+	private static void addGeffGroups( final N5Writer store, final Collection< String > groups )
+	{
+		synchronized ( GEFF_GROUPS_LOCK )
+		{
+			final String[] previous = store.getAttribute( "/", GEFF_GROUPS_KEY, String[].class );
+			final Set< String > names = new TreeSet<>( groups );
+			if ( previous != null )
+				names.addAll( Arrays.asList( previous ) );
+			store.setAttribute( "/", GEFF_GROUPS_KEY, names.toArray( new String[ 0 ] ) );
+		}
+	}
+
+	/**
+	 * Exports a model to the GEFF group at the specified path.
+	 */
+	private static void exportGroup( final Model model, final String outputZarrPath, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding, final GeffIndexes indexes ) throws IOException
+	{
+		if ( GeffStore.isRemote( outputZarrPath ) )
+		{
+			try (final N5Writer writer = GeffStore.openWriter( outputZarrPath ))
+			{
+				checkColumnExport( model, selection, writer );
+				exportGroup( model, writer, "", is2d, selection, filter, encoding, indexes );
+			}
+			return;
+		}
+
+		// Check that the export will fit in memory before starting it. Encoded
+		// core columns are only written by the column path.
+		final GeffMemoryEstimate estimate = GeffMemoryEstimate.forExport( model, selection );
+		final Strategy strategy;
+		if ( encoding.isCompactCore() && estimate.isColumnPathAvailable() )
+		{
+			estimate.checkColumns();
+			strategy = Strategy.COLUMNS;
+		}
+		else
+		{
+			strategy = estimate.select();
+		}
+		exportGroup( model, outputZarrPath, strategy, is2d, selection, filter, encoding, indexes );
+	}
+
+	/**
+	 * Exports a model to the local GEFF group at the specified path, with the
+	 * specified strategy.
+	 */
+	private static void exportGroup( final Model model, final String outputZarrPath, final Strategy strategy, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding, final GeffIndexes indexes ) throws IOException
+	{
+		final FeatureModel featureModel = model.getFeatureModel();
 		final TrackModel trackModel = model.getTrackModel();
-		serializeEdges( trackModel, featureModel, outputZarrPath );
+		final int chunkSize = GeffUtils.getChunkSize( outputZarrPath );
+		final NodeColumns nodes;
+		final EdgeColumns edges;
+		if ( strategy == Strategy.OBJECTS )
+		{
+			// Serialize spots, the GEFF library writes the core node columns.
+			final List< Spot > spots = serializeSpots( model.getSpots().iterable( true ), trackModel, outputZarrPath, is2d, filter );
+			nodes = indexes.isNone() ? null : new NodeColumns( spots, is2d );
+
+			// Features and edges are written from primitive arrays.
+			try (final N5ZarrWriter writer = new N5ZarrWriter( outputZarrPath, true ))
+			{
+				final GeffColumnWriter columnWriter = new GeffColumnWriter( writer, chunkSize, false );
+				writeSpotFeatures( spots, featureModel, columnWriter, selection, encoding );
+				edges = writeEdgeColumns( trackModel, featureModel, columnWriter, spots.stream().mapToInt( Spot::ID ).toArray(), selection, filter, encoding );
+				columnWriter.removeUnwrittenProps( "nodes/props", GeffColumn.GEFF_NODE_PROPS );
+				columnWriter.removeUnwrittenProps( "edges/props" );
+			}
+		}
+		else
+		{
+			// Low-memory path: write the columns from primitive arrays.
+			try (final N5ZarrWriter writer = new N5ZarrWriter( outputZarrPath, true ))
+			{
+				final GeffColumnWriter columnWriter = new GeffColumnWriter( writer, chunkSize, false );
+				nodes = writeSpotColumns( model.getSpots().iterable( true ), featureModel, trackModel, columnWriter, is2d, selection, filter, encoding );
+				edges = writeEdgeColumns( trackModel, featureModel, columnWriter, nodes.ids, selection, filter, encoding );
+				columnWriter.removeUnwrittenProps( "nodes/props" );
+				columnWriter.removeUnwrittenProps( "edges/props" );
+			}
+		}
 
 		final Set< Integer > trackIDs = trackModel.unsortedTrackIDs( false );
 		for ( final Integer trackID : trackIDs )
 		{
+			if ( !filter.testTrack( trackID ) )
+				continue;
+
 			/*
 			 * Write what tracks are marked as visible and serialize their
 			 * features.
@@ -91,10 +505,400 @@ public class TrackMateGeffWriter
 		}
 
 		// Write feature declarations.
-		serializeFeatureDeclarations( featureModel );
+		serializeFeatureDeclarations( featureModel, selection );
 
 		// GEFF metadata.
+		writeMetadata( model, outputZarrPath, is2d );
+
+		// The chunk hashes of previous incremental exports, the index arrays
+		// and the cached chunks are now stale.
+		try (final N5ZarrWriter writer = new N5ZarrWriter( outputZarrPath, true ))
+		{
+			GeffColumnWriter.clearChunkHashes( writer );
+			writeIndexes( writer, "", chunkSize, nodes, edges, indexes );
+			GeffChunkCache.getInstance().invalidate( GeffColumn.cacheKey( writer, "" ) );
+		}
+		// Done for the model.
+	}
+
+	/**
+	 * Checks that a model can be exported through the column path only, and
+	 * that it fits in memory.
+	 */
+	private static void checkColumnExport( final Model model, final GeffFeatureSelection selection, final N5Writer writer ) throws IOException
+	{
+		// Polygons are serialized by the GEFF library, that needs a local file.
+		final GeffMemoryEstimate estimate = GeffMemoryEstimate.forExport( model, selection );
+		if ( !estimate.isColumnPathAvailable() )
+			throw new IOException( "Spots with polygons can only be exported to a local GEFF file, not to " + writer.getURI() );
+		estimate.checkColumns();
+	}
+
+	/**
+	 * Exports a model to a GEFF group of a writer, through the column path
+	 * only. The caller checks that the model fits in memory.
+	 *
+	 * @param group
+	 *            the path of the GEFF group relative to the writer, or an
+	 *            empty string if the writer is opened on the group.
+	 */
+	private static void exportGroup( final Model model, final N5Writer writer, final String group, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding, final GeffIndexes indexes ) throws IOException
+	{
+		final FeatureModel featureModel = model.getFeatureModel();
+		final TrackModel trackModel = model.getTrackModel();
+		final int chunkSize = GeffStore.chunkSize( writer, group );
+		final GeffColumnWriter columnWriter = new GeffColumnWriter( writer, group, chunkSize, false );
+		final NodeColumns nodes = writeSpotColumns( model.getSpots().iterable( true ), featureModel, trackModel, columnWriter, is2d, selection, filter, encoding );
+		final EdgeColumns edges = writeEdgeColumns( trackModel, featureModel, columnWriter, nodes.ids, selection, filter, encoding );
+		columnWriter.removeUnwrittenProps( "nodes/props" );
+		columnWriter.removeUnwrittenProps( "edges/props" );
+
+		// Write feature declarations.
+		serializeFeatureDeclarations( featureModel, selection );
+
+		// GEFF metadata.
+		GeffStore.writeMetadata( createMetadata( model, is2d ), writer, group );
+
+		GeffColumnWriter.clearChunkHashes( writer, GeffStore.resolve( group, "/" ) );
+		writeIndexes( writer, group, chunkSize, nodes, edges, indexes );
+		GeffChunkCache.getInstance().invalidate( GeffColumn.cacheKey( writer, group ) );
+	}
+
+	/**
+	 * Exports a TrackMate model to a GEFF file, rewriting only the chunks that
+	 * changed since the last incremental export to the same file.
+	 * <p>
+	 * The content of every chunk of every column is recomputed in memory and
+	 * hashed. The hashes are stored in the GEFF group attributes, and only the
+	 * chunks whose hash differs from the stored one are written. Trailing
+	 * chunks are deleted when a column shrinks. The first incremental export
+	 * to a file writes all the chunks.
+	 * <p>
+	 * Spots and edges that were already in the file keep their rows: new ones
+	 * fill the rows of removed ones, and are appended otherwise. Inserting or
+	 * deleting a few spots therefore only rewrites the chunks of their rows
+	 * and the last chunks of the columns.
+	 * <p>
+	 * Spot polygons are serialized by the GEFF library, so models with
+	 * polygons fall back to a full
+	 * {@link #export(Model, String, boolean, GeffFeatureSelection)}.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @throws IOException
+	 */
+	public static void exportIncremental( final Model model, final String zarrPath, final boolean is2d ) throws IOException
+	{
+		exportIncremental( model, zarrPath, is2d, GeffFeatureSelection.all() );
+	}
+
+	/**
+	 * Incremental export writing only the selected features. Feature columns
+	 * that are not selected are removed from the file.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @throws IOException
+	 * @see #exportIncremental(Model, String, boolean)
+	 */
+	public static void exportIncremental( final Model model, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection ) throws IOException
+	{
+		exportIncremental( model, zarrPath, is2d, selection, GeffEncoding.none() );
+	}
+
+	/**
+	 * Incremental export writing only the selected features, and storing the
+	 * feature columns with the specified encoding.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param encoding
+	 *            the storage encoding of the feature columns.
+	 * @throws IOException
+	 * @see #exportIncremental(Model, String, boolean)
+	 */
+	public static void exportIncremental( final Model model, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection, final GeffEncoding encoding ) throws IOException
+	{
+		exportIncremental( model, zarrPath, is2d, selection, encoding, GeffIndexes.none() );
+	}
+
+	/**
+	 * Incremental export writing only the selected features, and the
+	 * specified indexes. The indexes are rebuilt from the arrays of the
+	 * export scan, and written in full.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param zarrPath
+	 *            the path to the Zarr file.
+	 * @param is2d
+	 *            whether the model is 2D.
+	 * @param selection
+	 *            the spot and edge features to write.
+	 * @param encoding
+	 *            the storage encoding of the feature columns.
+	 * @param indexes
+	 *            the indexes to write.
+	 * @throws IOException
+	 * @see #exportIncremental(Model, String, boolean)
+	 */
+	public static void exportIncremental( final Model model, final String zarrPath, final boolean is2d, final GeffFeatureSelection selection, final GeffEncoding encoding, final GeffIndexes indexes ) throws IOException
+	{
+		for ( final Spot spot : model.getSpots().iterable( true ) )
+		{
+			if ( spot.getRoi() != null )
+			{
+				export( model, zarrPath, is2d, selection, GeffExportFilter.all(), encoding, indexes );
+				return;
+			}
+		}
+
+		// Only the column path is incremental: fail fast if it does not fit.
+		GeffMemoryEstimate.forExport( model, selection ).checkColumns();
+
+		// Geff is a subfolder of the Zarr file.
+		final String outputZarrPath = GeffIOUtils.geffPath( zarrPath );
+		try (final N5Writer writer = GeffStore.openWriter( outputZarrPath ))
+		{
+			// GEFF metadata first, the chunk hashes are written last.
+			if ( GeffStore.isRemote( outputZarrPath ) )
+				GeffStore.writeMetadata( createMetadata( model, is2d ), writer );
+			else
+				writeMetadata( model, outputZarrPath, is2d );
+
+			final int chunkSize = chunkSize( writer, outputZarrPath );
+			final GeffColumnWriter columnWriter = new GeffColumnWriter( writer, chunkSize, true );
+			final FeatureModel featureModel = model.getFeatureModel();
+			final TrackModel trackModel = model.getTrackModel();
+			final NodeColumns nodes = writeSpotColumns( model.getSpots().iterable( true ), featureModel, trackModel, columnWriter, is2d, selection, GeffExportFilter.all(), encoding );
+			final EdgeColumns edges = writeEdgeColumns( trackModel, featureModel, columnWriter, nodes.ids, selection, GeffExportFilter.all(), encoding );
+
+			// Remove the features that are not in the model anymore.
+			columnWriter.removeUnwrittenProps( "nodes/props" );
+			columnWriter.removeUnwrittenProps( "edges/props" );
+			columnWriter.writeChunkHashes();
+			writeIndexes( writer, "", chunkSize, nodes, edges, indexes );
+		}
+	}
+
+	/**
+	 * Writes the indexes of a GEFF group from the node columns just written,
+	 * and removes the indexes that are not requested, that would be stale.
+	 *
+	 * @param nodes
+	 *            the node columns in row order. Only used, and so only
+	 *            needed, when an index is requested.
+	 * @param edges
+	 *            the edge columns in row order.
+	 */
+	private static void writeIndexes( final N5Writer writer, final String group, final int chunkSize, final NodeColumns nodes, final EdgeColumns edges, final GeffIndexes indexes )
+	{
+		if ( indexes.isSpatialIndex() )
+			GeffSpatialIndex.write( writer, group, chunkSize, indexes.getCellSize(), nodes.ts, nodes.xs, nodes.ys, nodes.zs, nodes.radii );
+		else
+			GeffSpatialIndex.clear( writer, group );
+		if ( indexes.isLineage() )
+			GeffLineage.write( writer, group, chunkSize, nodes.ids, nodes.ts, edges.ids );
+		else
+			GeffLineage.clear( writer, group );
+	}
+
+	/**
+	 * Returns the chunk size of a GEFF group, from the GEFF library for local
+	 * folders.
+	 */
+	private static int chunkSize( final N5Reader reader, final String zarrPath )
+	{
+		return GeffStore.isRemote( zarrPath ) ? GeffStore.chunkSize( reader ) : GeffUtils.getChunkSize( zarrPath );
+	}
+
+	/**
+	 * Writes the spots and their features as GEFF node columns, from primitive
+	 * arrays. Spots are sorted by frame and ID. In incremental mode, the spots
+	 * of the previous export keep their rows instead, see
+	 * {@link GeffRowAssignment}.
+	 *
+	 * @return the core node columns, in row order.
+	 */
+	private static NodeColumns writeSpotColumns( final Iterable< Spot > iterable, final FeatureModel featureModel, final TrackModel trackModel, final GeffColumnWriter columnWriter, final boolean is2d, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding )
+	{
+		final List< Spot > filtered = new ArrayList<>();
+		for ( final Spot spot : iterable )
+			if ( filter.test( spot ) )
+				filtered.add( spot );
+		filtered.sort( SPOT_ORDER );
+
+		// Keep the spots of the previous incremental export in their rows.
+		final List< Spot > spots;
+		final int[] previousIds = columnWriter.readPreviousInts( "nodes/ids" );
+		if ( previousIds == null )
+		{
+			spots = filtered;
+		}
+		else
+		{
+			final long[] previousKeys = new long[ previousIds.length ];
+			for ( int row = 0; row < previousIds.length; row++ )
+				previousKeys[ row ] = previousIds[ row ];
+			final long[] keys = new long[ filtered.size() ];
+			for ( int i = 0; i < keys.length; i++ )
+				keys[ i ] = filtered.get( i ).ID();
+			final int[] order = GeffRowAssignment.assign( previousKeys, keys );
+			spots = new ArrayList<>( order.length );
+			for ( final int i : order )
+				spots.add( filtered.get( i ) );
+		}
+
+		final NodeColumns nodes = new NodeColumns( spots, is2d );
+		final int n = spots.size();
+		final int[] segmentIds = new int[ n ];
+		final double[] colors = new double[ 4 * n ];
+		final double[] color = new double[ 4 ];
+		for ( int i = 0; i < n; i++ )
+		{
+			final Spot spot = spots.get( i );
+			final Integer segmentIdObj = trackModel.trackIDOf( spot );
+			segmentIds[ i ] = segmentIdObj != null ? segmentIdObj : -1;
+			getColorFromSpot( spot, color );
+			System.arraycopy( color, 0, colors, 4 * i, 4 );
+		}
+
+		writeCoreInts( columnWriter, "nodes/ids", nodes.ids, 1, encoding );
+		writeCoreInts( columnWriter, GeffColumn.nodeProp( "t" ), nodes.ts, 1, encoding );
+		writeCoreDoubles( columnWriter, GeffColumn.nodeProp( "x" ), nodes.xs, 1, encoding );
+		writeCoreDoubles( columnWriter, GeffColumn.nodeProp( "y" ), nodes.ys, 1, encoding );
+		if ( !is2d )
+			writeCoreDoubles( columnWriter, GeffColumn.nodeProp( "z" ), nodes.zs, 1, encoding );
+		writeCoreDoubles( columnWriter, GeffColumn.nodeProp( "radius" ), nodes.radii, 1, encoding );
+		writeCoreDoubles( columnWriter, GeffColumn.nodeProp( "color" ), colors, 4, encoding );
+		writeCoreInts( columnWriter, GeffColumn.nodeProp( "segment_id" ), segmentIds, 1, encoding );
+
+		writeSpotFeatures( spots, featureModel, columnWriter, selection, encoding );
+		return nodes;
+	}
+
+	/**
+	 * Writes the edges as GEFF edge columns, from primitive arrays. Edges are
+	 * sorted by source and target within each track, so that the same model
+	 * always yields the same columns. In incremental mode, the edges of the
+	 * previous export keep their rows instead, see {@link GeffRowAssignment}.
+	 *
+	 * @param nodeIds
+	 *            the ids of the spots written as nodes by the same export.
+	 * @see #extractEdges(TrackModel, GeffExportFilter, GeffIdIndex)
+	 */
+	private static EdgeColumns writeEdgeColumns( final TrackModel trackModel, final FeatureModel featureModel, final GeffColumnWriter columnWriter, final int[] nodeIds, final GeffFeatureSelection selection, final GeffExportFilter filter, final GeffEncoding encoding )
+	{
+		final EdgeColumns columns = stableRows( extractEdges( trackModel, filter, GeffIdIndex.of( nodeIds ) ), columnWriter.readPreviousInts( "edges/ids" ) );
+		final double[] scores = new double[ columns.distances.length ];
+		Arrays.fill( scores, -1. );
+
+		writeCoreInts( columnWriter, "edges/ids", columns.ids, 2, encoding );
+		writeCoreDoubles( columnWriter, GeffColumn.edgeProp( "distance" ), columns.distances, 1, encoding );
+		writeCoreDoubles( columnWriter, GeffColumn.edgeProp( "score" ), scores, 1, encoding );
+
+		writeEdgeFeatures( Arrays.asList( columns.edges ), featureModel, columnWriter, selection, encoding );
+		return columns;
+	}
+
+	/**
+	 * Writes the selected spot features as GEFF node columns, in the order of
+	 * the specified list. Missing values are written as {@link Double#NaN} or
+	 * {@link Integer#MIN_VALUE}.
+	 */
+	static void writeSpotFeatures( final List< Spot > spots, final FeatureModel featureModel, final GeffColumnWriter columnWriter, final GeffFeatureSelection selection, final GeffEncoding encoding )
+	{
+		final int n = spots.size();
+		final Map< String, Boolean > isIntMap = featureModel.getSpotFeatureIsInt();
+		for ( final String key : featureModel.getSpotFeatures() )
+		{
+			if ( !selection.isSpotFeatureSelected( key ) )
+				continue;
+
+			final boolean isInt = isIntMap.get( key );
+			if ( isInt )
+			{
+				final int[] values = new int[ n ];
+				for ( int i = 0; i < n; i++ )
+				{
+					final Double obj = spots.get( i ).getFeature( key );
+					values[ i ] = null == obj ? Integer.MIN_VALUE : obj.intValue();
+				}
+				columnWriter.writeInts( GeffColumn.nodeProp( key ), values, encoding );
+			}
+			else
+			{
+				final double[] values = new double[ n ];
+				for ( int i = 0; i < n; i++ )
+				{
+					final Double obj = spots.get( i ).getFeature( key );
+					values[ i ] = null == obj ? Double.NaN : obj.doubleValue();
+				}
+				columnWriter.writeDoubles( GeffColumn.nodeProp( key ), values, encoding );
+			}
+		}
+	}
+
+	/**
+	 * Writes the selected edge features as GEFF edge columns, in the order of
+	 * the specified list.
+	 */
+	static void writeEdgeFeatures( final List< DefaultWeightedEdge > edges, final FeatureModel featureModel, final GeffColumnWriter columnWriter, final GeffFeatureSelection selection, final GeffEncoding encoding )
+	{
+		final int n = edges.size();
+		final Map< String, Boolean > isIntMap = featureModel.getEdgeFeatureIsInt();
+		for ( final String key : featureModel.getEdgeFeatures() )
+		{
+			if ( !selection.isEdgeFeatureSelected( key ) )
+				continue;
+
+			final boolean isInt = isIntMap.get( key );
+			if ( isInt )
+			{
+				final int[] values = new int[ n ];
+				for ( int i = 0; i < n; i++ )
+				{
+					final Double obj = featureModel.getEdgeFeature( edges.get( i ), key );
+					values[ i ] = null == obj ? Integer.MIN_VALUE : obj.intValue();
+				}
+				columnWriter.writeInts( GeffColumn.edgeProp( key ), values, encoding );
+			}
+			else
+			{
+				final double[] values = new double[ n ];
+				for ( int i = 0; i < n; i++ )
+				{
+					final Double obj = featureModel.getEdgeFeature( edges.get( i ), key );
+					values[ i ] = null == obj ? Double.NaN : obj.doubleValue();
+				}
+				columnWriter.writeDoubles( GeffColumn.edgeProp( key ), values, encoding );
+			}
+		}
+	}
 
+	static void writeMetadata( final Model model, final String outputZarrPath, final boolean is2d ) throws IOException
+	{
+		GeffMetadata.writeToZarr( createMetadata( model, is2d ), outputZarrPath );
+	}
+
+	private static GeffMetadata createMetadata( final Model model, final boolean is2d )
+	{
 		final boolean directed = true;
 		final double[] roiMin = getRoiMin( model.getSpots().iterable( false ) );
 		final double[] roiMax = getRoiMax( model.getSpots().iterable( false ) );
@@ -113,9 +917,7 @@ public class TrackMateGeffWriter
 			axes[ d ] = GeffAxis.createSpaceAxis( axisNames[ d ], spaceUnits, roiMin[ rd ], roiMax[ rd ] );
 		}
 
-		final GeffMetadata metadata = new GeffMetadata( GEFF_VERSION, directed, axes );
-		GeffMetadata.writeToZarr( metadata, outputZarrPath );
-		// Done for the model.
+		return new GeffMetadata( GEFF_VERSION, directed, axes );
 	}
 
 	private static final double[] getRoiMin( final Iterable< Spot > iterable )
@@ -158,61 +960,239 @@ public class TrackMateGeffWriter
 		return max;
 	}
 
-	private static void serializeEdges(
-			final TrackModel trackModel,
-			final FeatureModel featureModel,
-			final String outputZarrPath )
-			throws IOException
+	/**
+	 * Writes a core <code>int</code> column with the core encoding: delta and
+	 * narrowest type when packed, narrowest plain type when compact, and
+	 * <code>int32</code> otherwise.
+	 */
+	private static void writeCoreInts( final GeffColumnWriter columnWriter, final String path, final int[] data, final int width, final GeffEncoding encoding )
 	{
-		final List< GeffEdge > geffEdges = new ArrayList<>();
-		final Set< Integer > trackIDs = trackModel.trackIDs( false );
+		if ( encoding.isPackCore() && width == 1 )
+			columnWriter.writePackedInts( path, data );
+		else if ( encoding.isCompactCore() )
+			columnWriter.writeNarrowInts( path, data, width );
+		else
+			columnWriter.writeInts( path, data, width );
+	}
 
-		int id = 0;
-		for ( final Integer trackID : trackIDs )
+	/**
+	 * Writes a core <code>double</code> column with the core encoding:
+	 * quantized with the tolerance when packed, <code>float32</code> when
+	 * compact, and <code>float64</code> otherwise.
+	 */
+	private static void writeCoreDoubles( final GeffColumnWriter columnWriter, final String path, final double[] data, final int width, final GeffEncoding encoding )
+	{
+		if ( encoding.isPackCore() && width == 1 && encoding.getTolerance() > 0. )
+			columnWriter.writeDoubles( path, data, encoding );
+		else if ( encoding.isCompactCore() )
+			columnWriter.writeFloats( path, data, width );
+		else
+			columnWriter.writeDoubles( path, data, width );
+	}
+
+	/**
+	 * Reorders the edge columns so that the edges of the previous incremental
+	 * export keep their rows.
+	 *
+	 * @param previousIds
+	 *            the previous <code>edges/ids</code> column, or
+	 *            <code>null</code> to keep the default order.
+	 * @see GeffRowAssignment
+	 */
+	private static EdgeColumns stableRows( final EdgeColumns columns, final int[] previousIds )
+	{
+		if ( previousIds == null )
+			return columns;
+
+		final long[] previousKeys = new long[ previousIds.length / 2 ];
+		for ( int row = 0; row < previousKeys.length; row++ )
+			previousKeys[ row ] = GeffRowAssignment.edgeKey( previousIds[ 2 * row ], previousIds[ 2 * row + 1 ] );
+		final int n = columns.distances.length;
+		final long[] keys = new long[ n ];
+		for ( int i = 0; i < n; i++ )
+			keys[ i ] = GeffRowAssignment.edgeKey( columns.ids[ 2 * i ], columns.ids[ 2 * i + 1 ] );
+
+		final int[] order = GeffRowAssignment.assign( previousKeys, keys );
+		final EdgeColumns out = new EdgeColumns( n );
+		for ( int row = 0; row < n; row++ )
 		{
-			final Set< DefaultWeightedEdge > edges = trackModel.trackEdges( trackID );
+			final int i = order[ row ];
+			out.edges[ row ] = columns.edges[ i ];
+			out.ids[ 2 * row ] = columns.ids[ 2 * i ];
+			out.ids[ 2 * row + 1 ] = columns.ids[ 2 * i + 1 ];
+			out.distances[ row ] = columns.distances[ i ];
+		}
+		return out;
+	}
+
+	/**
+	 * Extracts the source and target ids and the distance of the edges to
+	 * export into primitive arrays. Only the edges of visible tracks between
+	 * two exported nodes are extracted, so that no edge refers to a node
+	 * missing from the file.
+	 * <p>
+	 * Tracks are processed in parallel. A first pass collects and sorts the
+	 * edges of each track by source and target ID; the edge counts give the
+	 * offset of each track in the output arrays. A second pass fills the
+	 * arrays, each track writing its own range. Tracks are laid out in
+	 * increasing ID order, so edge rows, and thus edge ids, do not depend on
+	 * the number of threads.
+	 */
+	private static EdgeColumns extractEdges( final TrackModel trackModel, final GeffExportFilter filter, final GeffIdIndex nodes )
+	{
+		// trackIDs() is ordered by track name, sort the IDs numerically.
+		final int[] trackIDs = trackModel.unsortedTrackIDs( true ).stream()
+				.filter( filter::testTrack )
+				.mapToInt( Integer::intValue )
+				.sorted()
+				.toArray();
+		final int nTracks = trackIDs.length;
+
+		// Pass 1: filter and sort the edges of each track.
+		final long[][] trackKeys = new long[ nTracks ][];
+		final DefaultWeightedEdge[][] trackEdges = new DefaultWeightedEdge[ nTracks ][];
+		IntStream.range( 0, nTracks ).parallel().forEach( t -> {
+			final Set< DefaultWeightedEdge > edges = trackModel.trackEdges( trackIDs[ t ] );
+			final long[] keys = new long[ edges.size() ];
+			final DefaultWeightedEdge[] selected = new DefaultWeightedEdge[ edges.size() ];
+			int n = 0;
 			for ( final DefaultWeightedEdge edge : edges )
 			{
-				final Spot source = trackModel.getEdgeSource( edge );
-				final int sourceId = source.ID();
-				final Spot target = trackModel.getEdgeTarget( edge );
-				final int targetId = target.ID();
-				final double score = -1.;
-				final double distance = Math.sqrt( trackModel.getEdgeWeight( edge ) );
-				final GeffEdge geffEdge = new GeffEdge( id++, sourceId, targetId, score, distance );
-				geffEdges.add( geffEdge );
+				if ( !filter.test( edge ) )
+					continue;
+				final int sourceId = trackModel.getEdgeSource( edge ).ID();
+				final int targetId = trackModel.getEdgeTarget( edge ).ID();
+				if ( nodes.rowOf( sourceId ) < 0 || nodes.rowOf( targetId ) < 0 )
+					continue;
+				keys[ n ] = GeffRowAssignment.edgeKey( sourceId, targetId );
+				selected[ n ] = edge;
+				n++;
 			}
+			final int[] order = new int[ n ];
+			for ( int i = 0; i < n; i++ )
+				order[ i ] = i;
+			GeffRowAssignment.sort( keys, order, n );
+			trackKeys[ t ] = Arrays.copyOf( keys, n );
+			trackEdges[ t ] = new DefaultWeightedEdge[ n ];
+			for ( int i = 0; i < n; i++ )
+				trackEdges[ t ][ i ] = selected[ order[ i ] ];
+		} );
+
+		final int[] offsets = new int[ nTracks + 1 ];
+		for ( int t = 0; t < nTracks; t++ )
+			offsets[ t + 1 ] = offsets[ t ] + trackKeys[ t ].length;
+
+		// Pass 2: fill each track range of the output arrays.
+		final int n = offsets[ nTracks ];
+		final EdgeColumns columns = new EdgeColumns( n );
+		IntStream.range( 0, nTracks ).parallel().forEach( t -> {
+			final long[] keys = trackKeys[ t ];
+			final DefaultWeightedEdge[] edges = trackEdges[ t ];
+			for ( int i = 0; i < keys.length; i++ )
+			{
+				final int row = offsets[ t ] + i;
+				columns.ids[ 2 * row ] = ( int ) ( keys[ i ] >> 32 );
+				columns.ids[ 2 * row + 1 ] = ( int ) keys[ i ];
+				columns.distances[ row ] = Math.sqrt( trackModel.getEdgeWeight( edges[ i ] ) );
+				columns.edges[ row ] = edges[ i ];
+			}
+		} );
+		return columns;
+	}
+
+	/**
+	 * Primitive core node columns, in row order.
+	 */
+	private static final class NodeColumns
+	{
+
+		private final int[] ids;
+
+		private final int[] ts;
+
+		private final double[] xs;
+
+		private final double[] ys;
+
+		/** <code>null</code> in 2D. */
+		private final double[] zs;
+
+		private final double[] radii;
+
+		private NodeColumns( final List< Spot > spots, final boolean is2d )
+		{
+			final int n = spots.size();
+			this.ids = new int[ n ];
+			this.ts = new int[ n ];
+			this.xs = new double[ n ];
+			this.ys = new double[ n ];
+			this.zs = is2d ? null : new double[ n ];
+			this.radii = new double[ n ];
+			for ( int i = 0; i < n; i++ )
+			{
+				final Spot spot = spots.get( i );
+				ids[ i ] = spot.ID();
+				ts[ i ] = spot.getFeature( Spot.FRAME ).intValue();
+				xs[ i ] = spot.getDoublePosition( 0 );
+				ys[ i ] = spot.getDoublePosition( 1 );
+				if ( zs != null )
+					zs[ i ] = spot.getDoublePosition( 2 );
+				radii[ i ] = spot.getFeature( Spot.RADIUS ).doubleValue();
+			}
+		}
+	}
+
+	/**
+	 * Primitive edge columns, in row order.
+	 */
+	private static final class EdgeColumns
+	{
+
+		private final DefaultWeightedEdge[] edges;
+
+		/** Source and target ids, flattened row-major. */
+		private final int[] ids;
+
+		private final double[] distances;
+
+		private EdgeColumns( final int n )
+		{
+			this.edges = new DefaultWeightedEdge[ n ];
+			this.ids = new int[ 2 * n ];
+			this.distances = new double[ n ];
 		}
-		GeffEdge.writeToZarr( geffEdges, outputZarrPath, GeffUtils.getChunkSize( outputZarrPath ), GEFF_VERSION );
 	}
 
 	/**
 	 * Serializes the spots in the GEFF file format.
 	 * <p>
 	 * The spots are serialized as nodes in the GEFF file format, with the id
-	 * being the ID of the spot.
+	 * being the ID of the spot. Only the core node properties and the
+	 * polygons are written, by the GEFF library.
 	 *
 	 * @param iterable
 	 *            an iterable of spots to serialize.
-	 * @param featureModel
-	 *            required to retrieve whether a feature is double or int.
+	 * @param trackModel
+	 *            the TrackModel to retrieve track IDs for the spots.
 	 * @param outputZarrPath
 	 *            the path to the output Zarr file where the spots will be
 	 *            serialized.
-	 * @param trackModel
-	 *            the TrackModel to retrieve track IDs for the spots.
 	 * @param is2d
-	 * @return
-	 * @throws InvalidRangeException
+	 * @param filter
+	 *            the spots to serialize.
+	 * @return the spots serialized, in row order.
 	 * @throws IOException
 	 */
-	private static void serializeSpots( final Iterable< Spot > iterable, final FeatureModel featureModel, final TrackModel trackModel, final String outputZarrPath, final boolean is2d ) throws IOException
+	private static List< Spot > serializeSpots( final Iterable< Spot > iterable, final TrackModel trackModel, final String outputZarrPath, final boolean is2d, final GeffExportFilter filter ) throws IOException
 	{
 		final List< GeffNode > nodes = new ArrayList<>();
 		final List< Spot > spots = new ArrayList<>();
 		final Builder builder = GeffNode.builder();
 		for ( final Spot spot : iterable )
 		{
+			if ( !filter.test( spot ) )
+				continue;
+
 			spots.add( spot );
 
 			final double[] color = new double[ 4 ];
@@ -255,46 +1235,10 @@ public class TrackMateGeffWriter
 			if ( zFolder.toFile().exists() )
 				FileUtils.deleteDirectory( zFolder.toFile() );
 		}
-
-		/*
-		 * Write feature values for the spots.
-		 */
-
-		// Make a N5 writer.
-
-		try (final N5ZarrWriter writer = new N5ZarrWriter( outputZarrPath, true ))
-		{
-			final int chunkSize = GeffUtils.getChunkSize( outputZarrPath );
-
-			final Map< String, Boolean > isIntMap = featureModel.getSpotFeatureIsInt();
-			for ( final String key : featureModel.getSpotFeatures() )
-			{
-				final boolean isInt = isIntMap.get( key );
-				if ( isInt )
-				{
-					final ToIntFunction< Spot > function = s -> {
-						final Double obj = s.getFeature( key );
-						if ( null == obj )
-							return Integer.MIN_VALUE;
-						return obj.intValue();
-					};
-					GeffUtils.writeIntArray( spots, function, writer, "/nodes/props/" + key + "/values", chunkSize );
-				}
-				else
-				{
-					final ToDoubleFunction< Spot > function = s -> {
-						final Double obj = s.getFeature( key );
-						if ( null == obj )
-							return Double.NaN;
-						return obj.doubleValue();
-					};
-					GeffUtils.writeDoubleArray( spots, function, writer, "/nodes/props/" + key + "/values", chunkSize );
-				}
-			}
-		}
+		return spots;
 	}
 
-	private static void getColorFromSpot( final Spot spot, final double[] color )
+	static void getColorFromSpot( final Spot spot, final double[] color )
 	{
 		final Double val = spot.getFeature( ManualSpotColorAnalyzerFactory.FEATURE );
 		final Color c;
@@ -309,10 +1253,12 @@ public class TrackMateGeffWriter
 		color[ 3 ] = c.getAlpha() / 255.0;
 	}
 
-	private static void serializeFeatureDeclarations( final FeatureModel fm )
+	private static void serializeFeatureDeclarations( final FeatureModel fm, final GeffFeatureSelection selection )
 	{
 		// Spots
-		Collection< String > features = fm.getSpotFeatures();
+		Collection< String > features = fm.getSpotFeatures().stream()
+				.filter( selection::isSpotFeatureSelected )
+				.collect( Collectors.toList() );
 		Map< String, String > featureNames = fm.getSpotFeatureNames();
 		Map< String, String > featureShortNames = fm.getSpotFeatureShortNames();
 		Map< String, Dimension > featureDimensions = fm.getSpotFeatureDimensions();
@@ -320,7 +1266,9 @@ public class TrackMateGeffWriter
 		serializeFeatureGroup( "SpotFeatures", features, featureNames, featureShortNames, featureDimensions, featureIsInt );
 
 		// Edges
-		features = fm.getEdgeFeatures();
+		features = fm.getEdgeFeatures().stream()
+				.filter( selection::isEdgeFeatureSelected )
+				.collect( Collectors.toList() );
 		featureNames = fm.getEdgeFeatureNames();
 		featureShortNames = fm.getEdgeFeatureShortNames();
 		featureDimensions = fm.getEdgeFeatureDimensions();
@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.grid;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+public class GeffChunkCacheTest
+{
+
+	private static final String X = GeffColumn.nodeProp( "x" );
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final GeffChunkCache cache = GeffChunkCache.getInstance();
+
+	@Before
+	public void setUp()
+	{
+		cache.clear();
+		cache.resetStatistics();
+	}
+
+	private String newZarrPath() throws IOException
+	{
+		return new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+	}
+
+	@Test
+	public void testHitsAndMisses() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 5, 100, 1L );
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		try (final N5Reader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath ) ))
+		{
+			final GeffColumn column = GeffColumn.open( reader, X );
+			final int numChunks = column.numChunks();
+			column.readAllDoubles();
+			assertEquals( numChunks, cache.getMisses() );
+			assertEquals( 0, cache.getHits() );
+
+			// A reader opened on the store root shares the same entries.
+			try (final N5Reader root = new N5ZarrReader( zarrPath ))
+			{
+				GeffColumn.open( root, TrackMateGeffWriter.GEFF_PREFIX + "/" + X ).readAllDoubles();
+			}
+			assertEquals( numChunks, cache.getMisses() );
+			assertEquals( numChunks, cache.getHits() );
+		}
+	}
+
+	@Test
+	public void testRewriteInvalidatesGroupReaders() throws IOException
+	{
+		final Map< String, Model > models = new LinkedHashMap<>();
+		for ( int i = 0; i < 2; i++ )
+		{
+			final Model model = new Model();
+			grid( model, 3, 10, 2L + i );
+			models.put( "well" + i, model );
+		}
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.exportAll( models, zarrPath, false, 2 );
+
+		// The export writes through the store root, the reader is opened on
+		// one of its groups.
+		try (final N5Reader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath, "well0" ) ))
+		{
+			GeffColumn.open( reader, X ).readAllDoubles();
+			assertTrue( cache.size() > 0 );
+			TrackMateGeffWriter.exportAll( models, zarrPath, false, 2 );
+			assertEquals( 0, cache.size() );
+		}
+	}
+
+	@Test
+	public void testSameSizeRewrite() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = grid( model, 5, 100, 3L );
+		final String zarrPath = newZarrPath();
+		final String groupPath = GeffIOUtils.geffPath( zarrPath );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		try (final N5Reader reader = new N5ZarrReader( groupPath ))
+		{
+			final GeffColumn before = GeffColumn.open( reader, X );
+			final double[] staleChunk = before.readDoubleChunk( 0 );
+			final long staleStamp = before.stamp( 0 );
+			final String staleTag = reader.getAttribute( X, GeffColumnWriter.WRITE_TAG_KEY, String.class );
+			final Path chunkFile = Paths.get( groupPath, X, "0" );
+			final FileTime modified = Files.getLastModifiedTime( chunkFile );
+
+			// Spots are stored by frame then ID: the first spot is in row 0.
+			final Spot first = spots[ 0 ][ 0 ];
+			first.putFeature( Spot.POSITION_X, first.getFeature( Spot.POSITION_X ) + 1. );
+			TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+			// Simulate a coarse file time, and another process that still
+			// caches the chunk read before the rewrite.
+			Files.setLastModifiedTime( chunkFile, modified );
+			cache.get( GeffColumn.cacheKey( reader, X ), 0, true, staleStamp, () -> staleChunk );
+
+			final GeffColumn after = GeffColumn.open( reader, X );
+			assertEquals( before.size(), after.size() );
+			assertNotEquals( staleTag, reader.getAttribute( X, GeffColumnWriter.WRITE_TAG_KEY, String.class ) );
+			assertNotEquals( staleStamp, after.stamp( 0 ) );
+			assertEquals( first.getFeature( Spot.POSITION_X ), after.getDouble( 0 ), 0. );
+		}
+	}
+}
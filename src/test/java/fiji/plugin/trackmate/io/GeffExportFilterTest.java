@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.grid;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.SelectionModel;
+import fiji.plugin.trackmate.Spot;
+
+public class GeffExportFilterTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFrames() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 4, 5, 1L );
+		final Model read = export( model, GeffExportFilter.frames( 1, 2 ) );
+		assertEquals( 10, read.getSpots().getNSpots( false ) );
+		// Only the edges from frame 1 to frame 2 have both end-points.
+		assertEquals( 5, read.getTrackModel().edgeSet().size() );
+	}
+
+	@Test
+	public void testHiddenTracks() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = grid( model, 3, 4, 2L );
+		model.setTrackVisibility( model.getTrackModel().trackIDOf( spots[ 0 ][ 0 ] ), false );
+
+		// All the visible spots, but not the edges of the hidden track.
+		Model read = export( model, GeffExportFilter.all() );
+		assertEquals( 12, read.getSpots().getNSpots( false ) );
+		assertEquals( 6, read.getTrackModel().edgeSet().size() );
+
+		read = export( model, GeffExportFilter.visibleTracks( model ) );
+		assertEquals( 9, read.getSpots().getNSpots( false ) );
+		assertEquals( 6, read.getTrackModel().edgeSet().size() );
+	}
+
+	@Test
+	public void testSelection() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = grid( model, 3, 4, 3L );
+		final SelectionModel selectionModel = new SelectionModel( model );
+		selectionModel.addSpotToSelection( spots[ 1 ][ 1 ] );
+		selectionModel.addEdgeToSelection( model.getTrackModel().getEdge( spots[ 0 ][ 2 ], spots[ 1 ][ 2 ] ) );
+
+		// The edge from the selected spot is not selected.
+		final Model read = export( model, GeffExportFilter.selection( selectionModel ) );
+		assertEquals( 3, read.getSpots().getNSpots( false ) );
+		assertEquals( 1, read.getTrackModel().edgeSet().size() );
+	}
+
+	/**
+	 * Exports a model with a filter, checks that all the edges refer to
+	 * exported nodes, and reads the file back.
+	 */
+	private Model export( final Model model, final GeffExportFilter filter ) throws IOException
+	{
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, false, GeffFeatureSelection.all(), filter );
+		try (final N5ZarrReader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath ) ))
+		{
+			final GeffIdIndex nodes = GeffIdIndex.of( GeffColumn.open( reader, "nodes/ids" ).readAllInts() );
+			for ( final int id : GeffColumn.open( reader, "edges/ids" ).readAllInts() )
+				assertTrue( "Edge to the missing node " + id, nodes.rowOf( id ) >= 0 );
+		}
+		return TrackMateGeffReader.readModel( zarrPath );
+	}
+}
@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.FEATURE;
+import static fiji.plugin.trackmate.io.GeffTestModels.grid;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+public class GeffFeatureSelectionTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testExportSelection() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 3, 10, 1L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, false );
+		assertTrue( Files.isDirectory( featureColumn( zarrPath ) ) );
+
+		// A second export without the feature removes its column.
+		TrackMateGeffWriter.export( model, zarrPath, false, GeffFeatureSelection.none() );
+		assertFalse( Files.exists( featureColumn( zarrPath ) ) );
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertFalse( read.getFeatureModel().getSpotFeatures().contains( FEATURE ) );
+		assertEquals( model.getSpots().getNSpots( true ), read.getSpots().getNSpots( false ) );
+	}
+
+	@Test
+	public void testImportSelection() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 3, 10, 2L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, false );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath, new Model(), GeffFeatureSelection.spots() );
+		assertFalse( read.getFeatureModel().getSpotFeatures().contains( FEATURE ) );
+		for ( final Spot spot : read.getSpots().iterable( false ) )
+			assertNull( spot.getFeature( FEATURE ) );
+
+		final Model all = TrackMateGeffReader.readModel( zarrPath, new Model(), GeffFeatureSelection.spots( FEATURE ) );
+		GeffTestModels.assertSameModel( model, all, 1e-12 );
+	}
+
+	@Test
+	public void testColumnWithWrongRowCount() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 3, 10, 3L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, false );
+		try (final N5ZarrWriter writer = new N5ZarrWriter( GeffIOUtils.geffPath( zarrPath ), true ))
+		{
+			new GeffColumnWriter( writer, 1000, false ).writeDoubles( GeffColumn.nodeProp( "SHORT" ), new double[ 5 ], 1 );
+		}
+
+		try
+		{
+			TrackMateGeffReader.readModel( zarrPath );
+			fail( "A column with the wrong number of rows was read" );
+		}
+		catch ( final IOException e )
+		{
+			assertTrue( e.getMessage(), e.getMessage().contains( "SHORT" ) );
+		}
+
+		// It is not read when it is not selected.
+		TrackMateGeffReader.readModel( zarrPath, new Model(), GeffFeatureSelection.spots( FEATURE ) );
+	}
+
+	private static Path featureColumn( final String zarrPath )
+	{
+		return Paths.get( GeffIOUtils.geffPath( zarrPath ), GeffColumn.nodeProp( FEATURE ) ).getParent();
+	}
+}
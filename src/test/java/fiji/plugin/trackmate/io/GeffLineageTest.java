@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.spot;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+public class GeffLineageTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testQueries() throws IOException
+	{
+		// a -> b -> { c, d } and e -> f.
+		final Model model = new Model();
+		GeffTestModels.declareFeature( model );
+		final Spot a, b, c, d, e, f;
+		model.beginUpdate();
+		try
+		{
+			a = spot( model, 0., 0., 0 );
+			b = spot( model, 1., 0., 1 );
+			c = spot( model, 2., 0., 2 );
+			d = spot( model, 2., 1., 2 );
+			e = spot( model, 5., 5., 0 );
+			f = spot( model, 5., 6., 1 );
+			model.addEdge( a, b, 1. );
+			model.addEdge( b, c, 1. );
+			model.addEdge( b, d, 1. );
+			model.addEdge( e, f, 1. );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		model.getSpots().setVisible( true );
+
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, true, GeffFeatureSelection.all(), GeffExportFilter.all(), GeffEncoding.none(), GeffIndexes.lineage() );
+		final GeffLineage lineage = TrackMateGeffReader.openLineage( zarrPath );
+
+		assertEquals( 6, lineage.size() );
+		assertArrayEquals( ids( c, d ), sorted( lineage.children( b.ID() ) ) );
+		assertArrayEquals( ids(), lineage.children( c.ID() ) );
+		assertArrayEquals( ids( b ), lineage.parents( c.ID() ) );
+		assertArrayEquals( ids(), lineage.parents( a.ID() ) );
+		assertArrayEquals( ids( b, c, d ), sorted( lineage.descendants( a.ID() ) ) );
+		assertArrayEquals( ids( a, b ), sorted( lineage.ancestors( d.ID() ) ) );
+		assertArrayEquals( ids( a, e ), sorted( lineage.roots() ) );
+		assertArrayEquals( ids( c, d, f ), sorted( lineage.leaves() ) );
+		assertArrayEquals( ids( b ), lineage.divisions() );
+	}
+
+	@Test
+	public void testLineageFollowsIncrementalExports() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = GeffTestModels.grid( model, 3, 10, 1L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		final GeffIndexes indexes = GeffIndexes.all( 0. );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false, GeffFeatureSelection.all(), GeffEncoding.none(), indexes );
+		assertArrayEquals( ids(), TrackMateGeffReader.openLineage( zarrPath ).divisions() );
+
+		// A new daughter makes a division.
+		final Spot parent = spots[ 1 ][ 4 ];
+		model.beginUpdate();
+		try
+		{
+			final Spot daughter = spot( model, 500., 500., 2 );
+			model.addEdge( parent, daughter, 1. );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		model.getSpots().setVisible( true );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false, GeffFeatureSelection.all(), GeffEncoding.none(), indexes );
+
+		final GeffLineage lineage = TrackMateGeffReader.openLineage( zarrPath );
+		assertEquals( 31, lineage.size() );
+		assertArrayEquals( ids( parent ), lineage.divisions() );
+		assertArrayEquals( ids( spots[ 0 ][ 4 ] ), lineage.parents( parent.ID() ) );
+		// The spatial index was written by the same export.
+		TrackMateGeffReader.openSpatialIndex( zarrPath ).close();
+	}
+
+	private static int[] ids( final Spot... spots )
+	{
+		return sorted( Arrays.stream( spots ).mapToInt( Spot::ID ).toArray() );
+	}
+
+	private static int[] sorted( final int[] ids )
+	{
+		final int[] copy = ids.clone();
+		Arrays.sort( copy );
+		return copy;
+	}
+}
@@ -0,0 +1,171 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.assertSameModel;
+import static fiji.plugin.trackmate.io.GeffTestModels.declareFeature;
+import static fiji.plugin.trackmate.io.GeffTestModels.spot;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+public class GeffLiveWriterTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String newZarrPath() throws IOException
+	{
+		return new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+	}
+
+	@Test
+	public void testFramesArePublished() throws IOException
+	{
+		final Model model = new Model();
+		declareFeature( model );
+		final String zarrPath = newZarrPath();
+		try (final GeffLiveWriter liveWriter = GeffLiveWriter.start( model, zarrPath, false ))
+		{
+			addFrames( model, 0, 5 );
+
+			// The last frame may still receive spots.
+			assertEquals( Integer.valueOf( 3 ), lastFrame( zarrPath ) );
+		}
+		assertNull( lastFrame( zarrPath ) );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertSameModel( model, read, 1e-12 );
+	}
+
+	@Test
+	public void testModifiedSpotRewritesFile() throws IOException
+	{
+		final Model model = new Model();
+		declareFeature( model );
+		final String zarrPath = newZarrPath();
+		try (final GeffLiveWriter liveWriter = GeffLiveWriter.start( model, zarrPath, false ))
+		{
+			final Spot[][] spots = addFrames( model, 0, 3 );
+			assertEquals( Integer.valueOf( 1 ), lastFrame( zarrPath ) );
+
+			// A written spot is removed: the columns cannot be appended to.
+			model.beginUpdate();
+			try
+			{
+				model.removeSpot( spots[ 0 ][ 1 ] );
+			}
+			finally
+			{
+				model.endUpdate();
+			}
+			addFrames( model, 3, 2 );
+		}
+		assertNull( lastFrame( zarrPath ) );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertSameModel( model, read, 1e-12 );
+	}
+
+	@Test
+	public void testAppendFollowsExistingChunks() throws IOException
+	{
+		final String groupPath = GeffIOUtils.geffPath( newZarrPath() );
+		try (final N5Writer writer = new N5ZarrWriter( groupPath, true ))
+		{
+			// Chunks of 3 rows, while the column writer would use 10.
+			final String path = GeffColumn.nodeProp( "x" );
+			writer.createDataset( path, new long[] { 0 }, new int[] { 3 }, DataType.FLOAT64, new GzipCompression() );
+			final GeffColumnWriter columnWriter = new GeffColumnWriter( writer, 10, false );
+			columnWriter.appendDoubles( path, new double[] { 0., 1. }, 1 );
+			columnWriter.appendDoubles( path, new double[] { 2., 3., 4., 5., 6. }, 1 );
+
+			assertArrayEquals( new int[] { 3 }, writer.getDatasetAttributes( path ).getBlockSize() );
+			assertArrayEquals( new double[] { 0., 1., 2., 3., 4., 5., 6. }, GeffColumn.open( writer, path ).readAllDoubles(), 0. );
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testAppendRejectsNarrowerType() throws IOException
+	{
+		final String groupPath = GeffIOUtils.geffPath( newZarrPath() );
+		try (final N5Writer writer = new N5ZarrWriter( groupPath, true ))
+		{
+			final String path = GeffColumn.nodeProp( "t" );
+			writer.createDataset( path, new long[] { 0 }, new int[] { 10 }, DataType.INT16, new GzipCompression() );
+			new GeffColumnWriter( writer, 10, false ).appendInts( path, new int[] { 100_000 }, 1 );
+		}
+	}
+
+	/**
+	 * Adds a few spots per frame, one frame per model update, each linked to
+	 * the spot at the same position in the previous frame.
+	 */
+	private static Spot[][] addFrames( final Model model, final int firstFrame, final int nFrames )
+	{
+		final Spot[][] spots = new Spot[ nFrames ][ 3 ];
+		for ( int t = 0; t < nFrames; t++ )
+		{
+			final int frame = firstFrame + t;
+			model.beginUpdate();
+			try
+			{
+				for ( int i = 0; i < spots[ t ].length; i++ )
+				{
+					spots[ t ][ i ] = spot( model, 10. * i, 10. * frame, frame );
+					if ( t > 0 )
+						model.addEdge( spots[ t - 1 ][ i ], spots[ t ][ i ], 1. );
+				}
+			}
+			finally
+			{
+				model.endUpdate();
+			}
+		}
+		return spots;
+	}
+
+	private static Integer lastFrame( final String zarrPath )
+	{
+		try (final N5Reader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath ) ))
+		{
+			return reader.getAttribute( "/", GeffLiveWriter.LAST_FRAME_KEY, Integer.class );
+		}
+	}
+}
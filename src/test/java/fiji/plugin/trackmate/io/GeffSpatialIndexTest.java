@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+public class GeffSpatialIndexTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testQueries() throws IOException
+	{
+		// 3 frames of 5 x 5 spots, 10 units apart.
+		final Model model = new Model();
+		GeffTestModels.declareFeature( model );
+		final Spot[][][] spots = new Spot[ 3 ][ 5 ][ 5 ];
+		model.beginUpdate();
+		try
+		{
+			for ( int t = 0; t < 3; t++ )
+				for ( int i = 0; i < 5; i++ )
+					for ( int j = 0; j < 5; j++ )
+						spots[ t ][ i ][ j ] = GeffTestModels.spot( model, 10. * i, 10. * j, t );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		model.getSpots().setVisible( true );
+
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, true, GeffFeatureSelection.all(), GeffExportFilter.all(), GeffEncoding.none(), GeffIndexes.spatial( 15. ) );
+
+		final GeffSpatialIndex index = TrackMateGeffReader.openSpatialIndex( zarrPath );
+		try
+		{
+			assertArrayEquals( ids( spots[ 1 ][ 2 ][ 2 ] ), sorted( index.query( 1, 20., 20., 0., 5. ) ) );
+			assertArrayEquals( ids( spots[ 1 ][ 2 ][ 2 ], spots[ 1 ][ 3 ][ 2 ] ), sorted( index.query( 1, 25., 20., 0., 6. ) ) );
+			assertArrayEquals( ids( spots[ 2 ][ 0 ][ 0 ], spots[ 2 ][ 0 ][ 1 ], spots[ 2 ][ 1 ][ 0 ], spots[ 2 ][ 1 ][ 1 ] ),
+					sorted( index.query( 2, 5., 5., 0., 8. ) ) );
+			assertEquals( 0, index.query( 0, 100., 100., 0., 5. ).length );
+			assertEquals( 0, index.query( 7, 0., 0., 0., 5. ).length );
+
+			// A large radius finds the whole frame.
+			assertEquals( 25, index.query( 0, 20., 20., 0., 100. ).length );
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	@Test
+	public void testIndexFollowsExports() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = GeffTestModels.grid( model, 4, 30, 1L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		final GeffIndexes indexes = GeffIndexes.spatial( 0. );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false, GeffFeatureSelection.all(), GeffEncoding.none(), indexes );
+		assertFound( zarrPath, spots[ 2 ][ 5 ] );
+
+		// The index of an incremental export follows the moved spot.
+		final Spot moved = spots[ 2 ][ 5 ];
+		moved.putFeature( Spot.POSITION_X, 1000. );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false, GeffFeatureSelection.all(), GeffEncoding.none(), indexes );
+		assertFound( zarrPath, moved );
+
+		// An export without index removes the stale one.
+		TrackMateGeffWriter.export( model, zarrPath, false );
+		try
+		{
+			TrackMateGeffReader.openSpatialIndex( zarrPath ).close();
+			fail( "The spatial index was not removed" );
+		}
+		catch ( final IOException e )
+		{
+			// Expected.
+		}
+	}
+
+	private static void assertFound( final String zarrPath, final Spot spot ) throws IOException
+	{
+		try (final GeffSpatialIndex index = TrackMateGeffReader.openSpatialIndex( zarrPath ))
+		{
+			final int[] found = index.query( spot.getFeature( Spot.FRAME ).intValue(),
+					spot.getDoublePosition( 0 ), spot.getDoublePosition( 1 ), spot.getDoublePosition( 2 ), 1e-6 );
+			assertArrayEquals( ids( spot ), found );
+		}
+	}
+
+	private static int[] ids( final Spot... spots )
+	{
+		return sorted( Arrays.stream( spots ).mapToInt( Spot::ID ).toArray() );
+	}
+
+	private static int[] sorted( final int[] ids )
+	{
+		final int[] copy = ids.clone();
+		Arrays.sort( copy );
+		return copy;
+	}
+}
@@ -0,0 +1,122 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.junit.Test;
+
+public class GeffStoreTest
+{
+
+	@Test
+	public void testIsRemote()
+	{
+		assertTrue( GeffStore.isRemote( "s3://bucket/data.zarr" ) );
+		assertTrue( GeffStore.isRemote( "https://host/data.zarr" ) );
+		assertFalse( GeffStore.isRemote( "file:///tmp/data.zarr" ) );
+		assertFalse( GeffStore.isRemote( "/tmp/data.zarr" ) );
+		assertFalse( GeffStore.isRemote( "C:\\data\\data.zarr" ) );
+	}
+
+	@Test
+	public void testRetryIOFailures()
+	{
+		final AtomicInteger attempts = new AtomicInteger();
+		final String result = GeffStore.retry( () -> {
+			if ( attempts.incrementAndGet() < GeffStore.getMaxAttempts() )
+				throw new N5Exception.N5IOException( "Transient failure" );
+			return "done";
+		} );
+		assertEquals( "done", result );
+		assertEquals( GeffStore.getMaxAttempts(), attempts.get() );
+	}
+
+	@Test
+	public void testNoRetryOfOtherFailures()
+	{
+		for ( final N5Exception error : new N5Exception[] {
+				new N5Exception.N5NoSuchKeyException( "Missing key" ),
+				new N5Exception( "Invalid attributes" ) } )
+		{
+			final AtomicInteger attempts = new AtomicInteger();
+			try
+			{
+				GeffStore.retry( () -> {
+					attempts.incrementAndGet();
+					throw error;
+				} );
+				fail( "The failure was not thrown" );
+			}
+			catch ( final N5Exception e )
+			{
+				assertEquals( error, e );
+			}
+			assertEquals( 1, attempts.get() );
+		}
+	}
+
+	@Test
+	public void testForEachRunsEachTaskOnce()
+	{
+		final int n = 1000;
+		final AtomicIntegerArray counts = new AtomicIntegerArray( n );
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		GeffStore.forEach( n, i -> {
+			maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+			counts.incrementAndGet( i );
+			running.decrementAndGet();
+		} );
+		for ( int i = 0; i < n; i++ )
+			assertEquals( "Task " + i, 1, counts.get( i ) );
+		assertTrue( maxRunning.get() <= GeffStore.getMaxInFlight() );
+	}
+
+	@Test
+	public void testForEachThrowsTheFirstFailure()
+	{
+		final AtomicInteger ran = new AtomicInteger();
+		try
+		{
+			GeffStore.forEach( 1000, i -> {
+				ran.incrementAndGet();
+				if ( i == 10 )
+					throw new N5Exception( "Failure at 10" );
+			} );
+			fail( "The failure was not thrown" );
+		}
+		catch ( final N5Exception e )
+		{
+			assertEquals( "Failure at 10", e.getMessage() );
+		}
+		// The remaining tasks are skipped.
+		assertTrue( ran.get() < 1000 );
+	}
+}
@@ -0,0 +1,185 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.FEATURE;
+import static fiji.plugin.trackmate.io.GeffTestModels.spot;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.io.GeffTable.Aggregation;
+
+public class GeffTableTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Spot a, b, c, d, e, f, g, lone;
+
+	private String zarrPath;
+
+	/**
+	 * Two tracks, a -> b -> { c, d } and e -> f -> g with a gap of 2 frames,
+	 * and a spot that belongs to no track.
+	 */
+	@Before
+	public void setUp() throws IOException
+	{
+		final Model model = new Model();
+		GeffTestModels.declareFeature( model );
+		model.beginUpdate();
+		try
+		{
+			a = spot( model, 0., 0., 0 );
+			b = spot( model, 3., 4., 1 );
+			c = spot( model, 3., 5., 2 );
+			d = spot( model, 4., 4., 2 );
+			e = spot( model, 10., 0., 0 );
+			f = spot( model, 10., 1., 1 );
+			g = spot( model, 10., 5., 3 );
+			lone = spot( model, 50., 50., 1 );
+			model.addEdge( a, b, 25. );
+			model.addEdge( b, c, 1. );
+			model.addEdge( b, d, 1. );
+			model.addEdge( e, f, 1. );
+			model.addEdge( f, g, 16. );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		a.putFeature( FEATURE, 1. );
+		b.putFeature( FEATURE, 2. );
+		c.putFeature( FEATURE, 6. );
+		e.putFeature( FEATURE, 10. );
+		model.getSpots().setVisible( true );
+
+		zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, true );
+	}
+
+	@Test
+	public void testColumns() throws IOException
+	{
+		try (final GeffTable table = GeffTable.open( zarrPath ))
+		{
+			assertEquals( 8, table.nodeCount() );
+			assertEquals( 5, table.edgeCount() );
+			final int row = row( table, b );
+			assertEquals( 1, table.frames()[ row ] );
+			assertEquals( 3., table.x()[ row ], 0. );
+			assertEquals( 4., table.y()[ row ], 0. );
+			assertEquals( 2., table.nodeFeature( FEATURE )[ row ], 0. );
+			assertEquals( -1, table.nodeTrackIds()[ row( table, lone ) ] );
+
+			// 5 units in 1 frame from a to b, 4 units in 2 frames from f to g.
+			final double[] speeds = table.edgeSpeeds();
+			final double[] sorted = speeds.clone();
+			Arrays.sort( sorted );
+			assertArrayEquals( new double[] { 1., 1., 1., 2., 5. }, sorted, 1e-12 );
+
+			final int[] fast = GeffTable.select( speeds, 2., 10. );
+			assertEquals( 2, fast.length );
+			assertEquals( 7., GeffTable.aggregate( GeffTable.gather( speeds, fast ), Aggregation.SUM ), 1e-12 );
+		}
+	}
+
+	@Test
+	public void testTracks() throws IOException
+	{
+		try (final GeffTable table = GeffTable.open( zarrPath ))
+		{
+			assertTracks( table );
+		}
+	}
+
+	@Test
+	public void testConnectedComponents() throws IOException
+	{
+		// Without segment ids, tracks are the connected components.
+		try (final N5ZarrWriter writer = new N5ZarrWriter( GeffIOUtils.geffPath( zarrPath ), true ))
+		{
+			writer.remove( "nodes/props/segment_id" );
+		}
+		try (final GeffTable table = GeffTable.open( zarrPath ))
+		{
+			assertTracks( table );
+		}
+	}
+
+	private void assertTracks( final GeffTable table )
+	{
+		assertEquals( 2, table.trackIds().length );
+		final int t1 = track( table, a );
+		final int t2 = track( table, e );
+
+		final double[] counts = table.aggregateNodesByTrack( null, Aggregation.COUNT );
+		assertEquals( 4., counts[ t1 ], 0. );
+		assertEquals( 3., counts[ t2 ], 0. );
+
+		final double[] edgeCounts = table.aggregateEdgesByTrack( null, Aggregation.COUNT );
+		assertEquals( 3., edgeCounts[ t1 ], 0. );
+		assertEquals( 2., edgeCounts[ t2 ], 0. );
+
+		final double[] means = table.aggregateNodesByTrack( table.nodeFeature( FEATURE ), Aggregation.MEAN );
+		assertEquals( 9. / 4., means[ t1 ], 1e-12 );
+		assertEquals( 10. / 3., means[ t2 ], 1e-12 );
+		final double[] max = table.aggregateEdgesByTrack( table.edgeSpeeds(), Aggregation.MAX );
+		assertEquals( 5., max[ t1 ], 1e-12 );
+		assertEquals( 2., max[ t2 ], 1e-12 );
+
+		assertEquals( 2, table.durationsByTrack()[ t1 ] );
+		assertEquals( 3, table.durationsByTrack()[ t2 ] );
+		assertEquals( 1, table.divisionsByTrack()[ t1 ] );
+		assertEquals( 0, table.divisionsByTrack()[ t2 ] );
+	}
+
+	private static int row( final GeffTable table, final Spot spot )
+	{
+		final int[] ids = table.nodeIds();
+		for ( int row = 0; row < ids.length; row++ )
+			if ( ids[ row ] == spot.ID() )
+				return row;
+		throw new AssertionError( "Spot " + spot.ID() + " not found" );
+	}
+
+	/**
+	 * Returns the index of the track of a spot in the track aggregates.
+	 */
+	private static int track( final GeffTable table, final Spot spot )
+	{
+		return Arrays.binarySearch( table.trackIds(), table.nodeTrackIds()[ row( table, spot ) ] );
+	}
+}
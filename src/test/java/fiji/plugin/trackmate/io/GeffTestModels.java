@@ -0,0 +1,144 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import fiji.plugin.trackmate.Dimension;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackModel;
+
+/**
+ * Models and assertions shared by the GEFF tests.
+ */
+final class GeffTestModels
+{
+
+	/** A double spot feature declared by the test models. */
+	static final String FEATURE = "GEFF_TEST_FEATURE";
+
+	private GeffTestModels()
+	{}
+
+	/**
+	 * Creates a model with a grid of spots in each frame, each spot linked to
+	 * the spot at the same grid position in the next frame. Positions and
+	 * feature values are random, so that they are not exactly representable
+	 * by narrower types.
+	 *
+	 * @return the spots, indexed by frame and position in the grid.
+	 */
+	static Spot[][] grid( final Model model, final int nFrames, final int nPerFrame, final long seed )
+	{
+		final Random random = new Random( seed );
+		declareFeature( model );
+		final Spot[][] spots = new Spot[ nFrames ][ nPerFrame ];
+		model.beginUpdate();
+		try
+		{
+			for ( int t = 0; t < nFrames; t++ )
+			{
+				for ( int i = 0; i < nPerFrame; i++ )
+				{
+					final double x = 10. * i + random.nextDouble();
+					final double y = 10. * t + random.nextDouble();
+					final double z = random.nextDouble();
+					final Spot spot = new Spot( x, y, z, 1. + random.nextDouble(), 1. );
+					spot.putFeature( FEATURE, 100. * random.nextDouble() );
+					model.addSpotTo( spot, t );
+					spots[ t ][ i ] = spot;
+					if ( t > 0 )
+						model.addEdge( spots[ t - 1 ][ i ], spot, 1. );
+				}
+			}
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		model.getSpots().setVisible( true );
+		return spots;
+	}
+
+	/**
+	 * Creates a spot in a model, at the specified position and frame.
+	 */
+	static Spot spot( final Model model, final double x, final double y, final int frame )
+	{
+		final Spot spot = new Spot( x, y, 0., 1., 1. );
+		spot.putFeature( FEATURE, 0. );
+		model.addSpotTo( spot, frame );
+		return spot;
+	}
+
+	static void declareFeature( final Model model )
+	{
+		model.getFeatureModel().declareSpotFeatures(
+				Collections.singleton( FEATURE ),
+				Collections.singletonMap( FEATURE, "Test feature" ),
+				Collections.singletonMap( FEATURE, "Test" ),
+				Collections.singletonMap( FEATURE, Dimension.NONE ),
+				Collections.singletonMap( FEATURE, false ) );
+	}
+
+	/**
+	 * Checks that a model read from a GEFF file has the same spots, with the
+	 * same frames, positions, radii and test feature within the tolerance,
+	 * and the same edges as the exported one.
+	 */
+	static void assertSameModel( final Model expected, final Model actual, final double tolerance )
+	{
+		final Map< Integer, Spot > actualSpots = new HashMap<>();
+		for ( final Spot spot : actual.getSpots().iterable( false ) )
+			actualSpots.put( spot.ID(), spot );
+		assertEquals( "Number of spots", expected.getSpots().getNSpots( true ), actualSpots.size() );
+
+		for ( final Spot spot : expected.getSpots().iterable( true ) )
+		{
+			final Spot read = actualSpots.get( spot.ID() );
+			assertNotNull( "Spot " + spot.ID() + " was not read", read );
+			assertEquals( spot.getFeature( Spot.FRAME ).intValue(), read.getFeature( Spot.FRAME ).intValue() );
+			for ( final String feature : new String[] { Spot.POSITION_X, Spot.POSITION_Y, Spot.POSITION_Z, Spot.RADIUS, FEATURE } )
+				assertEquals( feature + " of spot " + spot.ID(), spot.getFeature( feature ), read.getFeature( feature ), tolerance );
+		}
+
+		final TrackModel expectedTracks = expected.getTrackModel();
+		final TrackModel actualTracks = actual.getTrackModel();
+		assertEquals( "Number of edges", expectedTracks.edgeSet().size(), actualTracks.edgeSet().size() );
+		for ( final DefaultWeightedEdge edge : expectedTracks.edgeSet() )
+		{
+			final Spot source = actualSpots.get( expectedTracks.getEdgeSource( edge ).ID() );
+			final Spot target = actualSpots.get( expectedTracks.getEdgeTarget( edge ).ID() );
+			assertTrue( "Missing edge " + source.ID() + " -> " + target.ID(), actualTracks.getEdge( source, target ) != null );
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.assertSameModel;
+import static fiji.plugin.trackmate.io.GeffTestModels.grid;
+import static fiji.plugin.trackmate.io.GeffTestModels.spot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+public class GeffToTmXmlConverterTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testConvert() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 5, 20, 1L );
+		assertConverted( model, 1e-12 );
+	}
+
+	@Test
+	public void testSparseFrames() throws IOException
+	{
+		// A dense frame range would not fit in memory.
+		final Model model = new Model();
+		GeffTestModels.declareFeature( model );
+		model.beginUpdate();
+		try
+		{
+			final Spot a = spot( model, 1., 2., 0 );
+			final Spot b = spot( model, 3., 4., 1_500_000_000 );
+			model.addEdge( a, b, 1. );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		model.getSpots().setVisible( true );
+		assertConverted( model, 0. );
+	}
+
+	@Test
+	public void testRowsNotSortedByFrame() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = grid( model, 5, 20, 2L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		// Incremental exports append new spots after the existing rows.
+		model.beginUpdate();
+		try
+		{
+			final Spot added = spot( model, 500., 500., 0 );
+			model.addEdge( added, spots[ 1 ][ 0 ], 1. );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		model.getSpots().setVisible( true );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		final Model read = convert( zarrPath );
+		assertSameModel( model, read, 1e-12 );
+		assertEquals( "Number of spots in frame 0", 21, count( read.getSpots().iterable( 0, true ) ) );
+	}
+
+	private void assertConverted( final Model model, final double tolerance ) throws IOException
+	{
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.export( model, zarrPath, false );
+		final Model read = convert( zarrPath );
+		assertSameModel( model, read, tolerance );
+		assertEquals( "Spots are visible", model.getSpots().getNSpots( true ), read.getSpots().getNSpots( true ) );
+		for ( final Spot spot : read.getSpots().iterable( false ) )
+			assertEquals( "Quality of spot " + spot.ID(), 1., spot.getFeature( Spot.QUALITY ), 0. );
+	}
+
+	private Model convert( final String zarrPath ) throws IOException
+	{
+		final File xml = new File( folder.newFolder(), "test.xml" );
+		GeffToTmXmlConverter.convert( zarrPath, xml.getAbsolutePath() );
+		final TmXmlReader reader = new TmXmlReader( xml );
+		final Model model = reader.getModel();
+		assertTrue( reader.getErrorMessage(), reader.isReadingOk() );
+		return model;
+	}
+
+	private static int count( final Iterable< Spot > spots )
+	{
+		int n = 0;
+		for ( @SuppressWarnings( "unused" )
+		final Spot spot : spots )
+			n++;
+		return n;
+	}
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.grid;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+public class TrackMateGeffIncrementalTest
+{
+
+	private static final FileTime EPOCH = FileTime.fromMillis( 0 );
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOnlyChangedChunksAreRewritten() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = grid( model, 30, 100, 1L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		final Path xValues = column( zarrPath, "x" );
+		final Path yValues = column( zarrPath, "y" );
+		final List< Path > xChunks = chunks( xValues );
+		assertTrue( "The test needs several chunks", xChunks.size() > 1 );
+		for ( final Path chunk : xChunks )
+			Files.setLastModifiedTime( chunk, EPOCH );
+		for ( final Path chunk : chunks( yValues ) )
+			Files.setLastModifiedTime( chunk, EPOCH );
+
+		// Spots are stored by frame then ID: the first spot is in row 0.
+		final Spot first = spots[ 0 ][ 0 ];
+		first.putFeature( Spot.POSITION_X, first.getFeature( Spot.POSITION_X ) + 1. );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		for ( final Path chunk : chunks( xValues ) )
+		{
+			if ( chunk.getFileName().toString().equals( "0" ) )
+				assertNotEquals( "Chunk " + chunk + " was not rewritten", EPOCH, Files.getLastModifiedTime( chunk ) );
+			else
+				assertEquals( "Chunk " + chunk + " was rewritten", EPOCH, Files.getLastModifiedTime( chunk ) );
+		}
+		for ( final Path chunk : chunks( yValues ) )
+			assertEquals( "Chunk " + chunk + " was rewritten", EPOCH, Files.getLastModifiedTime( chunk ) );
+
+		// The file still reads back as the model.
+		GeffTestModels.assertSameModel( model, TrackMateGeffReader.readModel( zarrPath ), 1e-12 );
+	}
+
+	@Test
+	public void testAddedAndRemovedSpots() throws IOException
+	{
+		final Model model = new Model();
+		final Spot[][] spots = grid( model, 10, 50, 2L );
+		final String zarrPath = new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		model.beginUpdate();
+		try
+		{
+			model.removeSpot( spots[ 3 ][ 7 ] );
+			final Spot added = GeffTestModels.spot( model, 1000., 1000., 4 );
+			model.addEdge( spots[ 3 ][ 8 ], added, 1. );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		model.getSpots().setVisible( true );
+		TrackMateGeffWriter.exportIncremental( model, zarrPath, false );
+
+		GeffTestModels.assertSameModel( model, TrackMateGeffReader.readModel( zarrPath ), 1e-12 );
+	}
+
+	private static Path column( final String zarrPath, final String name )
+	{
+		return Paths.get( GeffIOUtils.geffPath( zarrPath ), GeffColumn.nodeProp( name ) );
+	}
+
+	private static List< Path > chunks( final Path column ) throws IOException
+	{
+		try (Stream< Path > files = Files.list( column ))
+		{
+			return files
+					.filter( p -> p.getFileName().toString().matches( "\\d+" ) )
+					.collect( Collectors.toList() );
+		}
+	}
+}
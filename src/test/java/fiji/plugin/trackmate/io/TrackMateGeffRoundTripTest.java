@@ -0,0 +1,224 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.GeffTestModels.assertSameModel;
+import static fiji.plugin.trackmate.io.GeffTestModels.grid;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.io.GeffMemoryEstimate.Strategy;
+
+public class TrackMateGeffRoundTripTest
+{
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String newZarrPath() throws IOException
+	{
+		return new File( folder.newFolder(), "test.zarr" ).getAbsolutePath();
+	}
+
+	@Test
+	public void testObjectPath() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 5, 20, 1L );
+		assertEquals( Strategy.OBJECTS, GeffMemoryEstimate.forExport( model, GeffFeatureSelection.all() ).select() );
+
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.export( model, zarrPath, false );
+		assertEquals( DataType.FLOAT64, dataType( zarrPath, GeffColumn.nodeProp( "x" ) ) );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertSameModel( model, read, 1e-12 );
+	}
+
+	@Test
+	public void testColumnPath() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 5, 20, 2L );
+
+		// A compact core is only written and read by the column path.
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.export( model, zarrPath, false, GeffFeatureSelection.all(), GeffExportFilter.all(), GeffEncoding.compact( 0. ) );
+		assertEquals( DataType.FLOAT32, dataType( zarrPath, GeffColumn.nodeProp( "x" ) ) );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertSameModel( model, read, 1e-4 );
+	}
+
+	@Test
+	public void testFloat32Features() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 5, 20, 2L );
+
+		// Features only: the core columns stay at full width.
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.export( model, zarrPath, false, GeffFeatureSelection.all(), GeffExportFilter.all(), new GeffEncoding( true, 0., false ) );
+		assertEquals( GeffEncoding.FLOAT32, encoding( zarrPath, GeffColumn.nodeProp( GeffTestModels.FEATURE ) ) );
+		assertEquals( DataType.FLOAT64, dataType( zarrPath, GeffColumn.nodeProp( "x" ) ) );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertSameModel( model, read, 1e-4 );
+	}
+
+	@Test
+	public void testCompactEncodingTolerance() throws IOException
+	{
+		final double tolerance = 0.01;
+		final Model model = new Model();
+		grid( model, 5, 20, 3L );
+
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.export( model, zarrPath, false, GeffFeatureSelection.all(), GeffExportFilter.all(), GeffEncoding.compact( tolerance ) );
+		assertEquals( GeffEncoding.QUANTIZED, encoding( zarrPath, GeffColumn.nodeProp( GeffTestModels.FEATURE ) ) );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertSameModel( model, read, tolerance * ( 1. + 1e-9 ) );
+	}
+
+	@Test
+	public void testPackedEncodingTolerance() throws IOException
+	{
+		final double tolerance = 0.005;
+		final Model model = new Model();
+		grid( model, 5, 20, 4L );
+
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.export( model, zarrPath, false, GeffFeatureSelection.all(), GeffExportFilter.all(), GeffEncoding.packed( tolerance ) );
+		assertEquals( GeffEncoding.QUANTIZED, encoding( zarrPath, GeffColumn.nodeProp( "x" ) ) );
+
+		final Model read = TrackMateGeffReader.readModel( zarrPath );
+		assertSameModel( model, read, tolerance * ( 1. + 1e-9 ) );
+	}
+
+	@Test
+	public void testStoreRoundTrip() throws IOException
+	{
+		final Model model = new Model();
+		grid( model, 5, 20, 5L );
+
+		// Writers and readers of object stores go through the same path as
+		// any N5 writer or reader on the GEFF group.
+		final String groupPath = GeffIOUtils.geffPath( newZarrPath() );
+		try (final N5Writer writer = new N5ZarrWriter( groupPath, true ))
+		{
+			TrackMateGeffWriter.export( model, writer, false, GeffFeatureSelection.all(), GeffExportFilter.all(), GeffEncoding.none() );
+		}
+		final Model read;
+		try (final N5Reader reader = new N5ZarrReader( groupPath ))
+		{
+			read = TrackMateGeffReader.readModel( reader, new Model(), GeffFeatureSelection.all() );
+		}
+		assertSameModel( model, read, 1e-12 );
+	}
+
+	@Test
+	public void testExportAll() throws IOException
+	{
+		final Map< String, Model > models = new LinkedHashMap<>();
+		for ( int i = 0; i < 3; i++ )
+		{
+			final Model model = new Model();
+			grid( model, 3, 10 + i, 10L + i );
+			models.put( "well" + i, model );
+		}
+
+		final String zarrPath = newZarrPath();
+		TrackMateGeffWriter.exportAll( models, zarrPath, false, 2 );
+		assertEquals( models.keySet().stream().sorted().collect( Collectors.toList() ), TrackMateGeffReader.listGroups( zarrPath ) );
+		for ( final Map.Entry< String, Model > entry : models.entrySet() )
+		{
+			final Model read = TrackMateGeffReader.readModel( zarrPath, entry.getKey(), new Model(), GeffFeatureSelection.all() );
+			assertSameModel( entry.getValue(), read, 1e-12 );
+		}
+	}
+
+	@Test
+	public void testEdgeOrderDoesNotDependOnThreads() throws Exception
+	{
+		final Model model = new Model();
+		grid( model, 5, 200, 6L );
+
+		// Parallel streams run in the pool of the task that starts them.
+		final int[][] edgeIds = new int[ 2 ][];
+		final int[] parallelisms = new int[] { 1, 4 };
+		for ( int i = 0; i < parallelisms.length; i++ )
+		{
+			final String zarrPath = newZarrPath();
+			final ForkJoinPool pool = new ForkJoinPool( parallelisms[ i ] );
+			try
+			{
+				pool.submit( () -> {
+					TrackMateGeffWriter.export( model, zarrPath, false );
+					return null;
+				} ).get();
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+			try (final N5Reader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath ) ))
+			{
+				edgeIds[ i ] = GeffColumn.open( reader, "edges/ids" ).readAllInts();
+			}
+		}
+		assertArrayEquals( edgeIds[ 0 ], edgeIds[ 1 ] );
+	}
+
+	private static DataType dataType( final String zarrPath, final String path )
+	{
+		try (final N5Reader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath ) ))
+		{
+			return reader.getDatasetAttributes( path ).getDataType();
+		}
+	}
+
+	private static String encoding( final String zarrPath, final String path )
+	{
+		try (final N5Reader reader = new N5ZarrReader( GeffIOUtils.geffPath( zarrPath ) ))
+		{
+			return reader.getAttribute( path, GeffEncoding.ENCODING_KEY, String.class );
+		}
+	}
+}